@@ -1,17 +1,53 @@
 package cn.liziguo.scrcpy;
 
 import cn.liziguo.scrcpy.constant.Codec;
+import cn.liziguo.scrcpy.constant.DecodeMode;
 import cn.liziguo.scrcpy.constant.Encoder;
-import org.bytedeco.javacv.FFmpegFrameGrabber;
+import cn.liziguo.scrcpy.constant.PoolExhaustedPolicy;
+import cn.liziguo.scrcpy.decoder.DecoderBackend;
+import cn.liziguo.scrcpy.decoder.DecoderInfo;
+import cn.liziguo.scrcpy.decoder.DecoderOptions;
+import cn.liziguo.scrcpy.decoder.ScaledOutput;
+import cn.liziguo.scrcpy.decoder.VideoDecoder;
+import cn.liziguo.scrcpy.exception.RecorderException;
+import cn.liziguo.scrcpy.frame.FrameMailbox;
+import cn.liziguo.scrcpy.frame.FramePipeline;
+import cn.liziguo.scrcpy.frame.FramePool;
+import cn.liziguo.scrcpy.frame.FramePublisher;
+import cn.liziguo.scrcpy.frame.NormalizedRect;
+import cn.liziguo.scrcpy.frame.PooledFrame;
+import cn.liziguo.scrcpy.frame.RegionSubscription;
+import cn.liziguo.scrcpy.frame.ScreenStateIndex;
+import cn.liziguo.scrcpy.frame.SharedFrameExporter;
+import cn.liziguo.scrcpy.frame.SnapshotCache;
+import cn.liziguo.scrcpy.frame.StageTimer;
+import cn.liziguo.scrcpy.record.ReplayBuffer;
+import cn.liziguo.scrcpy.record.StreamRecorder;
+import cn.liziguo.scrcpy.relay.RelayServer;
+import cn.liziguo.scrcpy.stream.KeyFrameRequester;
+import cn.liziguo.scrcpy.stream.LagMonitor;
+import cn.liziguo.scrcpy.stream.ScrcpyDemuxer;
+import cn.liziguo.scrcpy.stream.VideoPacket;
 import org.bytedeco.javacv.Frame;
 
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * @author Liziguo
@@ -22,6 +58,10 @@ public class ScrcpyClient implements Closeable {
     static final String ADB_PATH = "adb.exe";
     static final String JAR_NAME = "scrcpy-server";
     static final String SERVER_VERSION = "3.3";
+    /**
+     * 合并短时间内重复的关键帧请求
+     */
+    static final long KEY_FRAME_REQUEST_INTERVAL_MILLIS = 100;
 
     /**
      * 安卓设备 也可以是host:port的形式远程调试(如果远程调试连接不上可以尝试进行一次有线调试之后再远程调试就能连上了)
@@ -35,6 +75,11 @@ public class ScrcpyClient implements Closeable {
      * 比特率
      */
     private int bitrate = 1024 * 1024 * 8;
+    /**
+     * 服务端裁剪：设备像素坐标(未经 maxWidth 缩放)，为 null 表示不裁剪。整个会话只关心一个区域时使用，
+     * 编码、传输和解码的数据量都会随之减少。裁剪后 Control.touch 的归一化坐标相对于裁剪后的画面
+     */
+    private Rectangle crop;
     /**
      * 最大帧率，0 表示不限制（在安卓 10 之后支持）
      */
@@ -60,17 +105,95 @@ public class ScrcpyClient implements Closeable {
      */
     private int connectionTimeout = 3000;
     /**
-     * 编码器名称：编码器名称，枚举值：[OMX.google.h264.encoder、OMX.qcom.video.encoder.avc、c2.qti.avc.encoder、c2.android.avc.encoder]
+     * 编码器：必须与 codec 一致，为 null 时使用 {@link Encoder#defaultOf(Codec)}
      */
-    private Encoder encoder = Encoder.OMX_GOOGLE_H264_ENCODER;
+    private Encoder encoder;
     /**
      * 编码器名称：编码器名称，枚举值：[h264、h265、av1]
      */
     private Codec codec = Codec.H264;
+    /**
+     * 解码器工厂：默认直接调用 libavcodec，可以切换为 {@link DecoderBackend#GRABBER} 或自定义 {@link VideoDecoder} 实现
+     */
+    private Supplier<? extends VideoDecoder> decoderFactory = DecoderBackend.AVCODEC;
+    /**
+     * 解码器参数：线程数、多线程方式、跳过环路滤波/跳帧级别、输出像素格式
+     */
+    private DecoderOptions decoderOptions = new DecoderOptions();
+    /**
+     * 追帧阈值(毫秒)：解码延迟超过该值时丢弃关键帧之前的所有视频包并请求新的关键帧，0 表示关闭(默认)，建议值 300~1000
+     */
+    private int catchUpLagMillis;
+    /**
+     * 追帧阈值(字节)：socket中积压的未读数据超过该值时同样触发追帧，0 表示关闭(默认)，建议值为1秒的码率。
+     * 积压按内核接收缓冲区中的字节数计算，不会超过 SO_RCVBUF，阈值应小于接收缓冲区大小
+     */
+    private int catchUpPendingBytes;
+    /**
+     * 解码模式：全部解码、只解码关键帧、每N帧输出一帧，可以在运行时切换
+     */
+    private volatile DecodeMode decodeMode = DecodeMode.FULL;
+    /**
+     * EVERY_NTH 模式下每隔多少帧输出一帧
+     */
+    private volatile int decodeInterval = 30;
+    /**
+     * KEY_FRAMES_ONLY 模式下请求关键帧的间隔(毫秒)
+     */
+    private volatile int keyFrameIntervalMillis = 1000;
     /**
      * 视频帧回调
      */
-    private Consumer<Frame> onFrame;
+    private volatile Consumer<Frame> onFrame;
+
+    /**
+     * 画面状态索引，每帧计算一次感知哈希并唤醒等待者
+     */
+    private volatile ScreenStateIndex screenStateIndex;
+    /**
+     * 帧池容量：预分配的帧缓冲区数量，仅在设置了 onPooledFrame 时生效
+     */
+    private int framePoolSize = 3;
+    /**
+     * 帧池耗尽策略：所有缓冲区都被消费者占用时如何处理新帧
+     */
+    private PoolExhaustedPolicy framePoolPolicy = PoolExhaustedPolicy.DROP_NEWEST;
+    /**
+     * 池化视频帧回调：帧来自预分配的帧池，不会每帧clone，消费者用完之后必须调用 {@link PooledFrame#release()} 归还
+     */
+    private Consumer<PooledFrame> onPooledFrame;
+    /**
+     * 最新帧回调：在独立的消费线程中执行，解码线程不会等待它。回调处理不过来时只处理最新的一帧，中间帧被丢弃，
+     * 回调中的帧只在回调期间有效
+     */
+    private Consumer<Frame> onLatestFrame;
+    /**
+     * 保存最新帧：开启后可以随时通过 {@link #latestFrame()} 获取最新的一帧
+     */
+    private boolean latestFrameEnabled;
+    /**
+     * 帧处理流水线：解码后的帧在流水线的工作线程池中并行转换，再按顺序交给消费者，会随客户端一起关闭
+     */
+    private volatile FramePipeline<?> framePipeline;
+    /**
+     * 视频包回调：未解码的压缩视频包(H.264/H.265/AV1 access unit 或配置包)，
+     * 包数据只在回调期间有效，需要保留时请自行拷贝。
+     * 只设置了 onPacket 而没有任何视频帧回调时不会解码，可以省下整个解码器的CPU开销
+     */
+    private volatile Consumer<VideoPacket> onPacket;
+    /**
+     * 视频包监听器：录像、缓存等内部组件使用，与 onPacket 互不影响
+     */
+    private final List<Consumer<VideoPacket>> packetListeners = new CopyOnWriteArrayList<>();
+    /**
+     * 最近一次收到的配置包，运行中开始录像时写入文件头
+     */
+    private volatile byte[] configPacket;
+    /**
+     * 读取视频流的线程更新 configPacket 并分发配置包、以及中途加入的监听器取得配置包时持有，
+     * 保证监听器不会漏掉配置包，也不会被旧的配置包覆盖
+     */
+    private final Object configLock = new Object();
 
     private StringBuilder startExceptionMsg;
     private String deviceName;
@@ -78,13 +201,50 @@ public class ScrcpyClient implements Closeable {
     private int resolutionHeight;
     private Socket videoSocket;
     private Socket controlSocket;
-    private boolean alive;
+    private ScrcpyDemuxer demuxer;
+    private volatile boolean alive;
+    private FramePool framePool;
+    private volatile FrameMailbox frameMailbox;
+    private volatile SnapshotCache snapshotCache;
+    private volatile FramePublisher framePublisher;
+    private final List<ScaledOutput> scaledOutputs = new CopyOnWriteArrayList<>();
+    private final List<RegionSubscription> regionSubscriptions = new CopyOnWriteArrayList<>();
+    private final List<SharedFrameExporter> sharedFrameExporters = new CopyOnWriteArrayList<>();
+    private final StageTimer decodeTimer = new StageTimer("decode");
+    private DecoderInfo decoderInfo;
+    private final LagMonitor lagMonitor = new LagMonitor();
+    /**
+     * 所有需要关键帧的地方共用，在单独的线程中调用 {@link Control#resetVideo()}
+     */
+    private final KeyFrameRequester keyFrameRequester = new KeyFrameRequester(() -> {
+        Control current = this.control;
+        if (current != null) {
+            current.resetVideo();
+        }
+    }, KEY_FRAME_REQUEST_INTERVAL_MILLIS);
+    /**
+     * 以下计数只在读取视频流的线程中递增，其他线程只读
+     */
+    private volatile long catchUpCount;
+    private volatile long skippedPacketCount;
+    private volatile long decodedFrameCount;
     public Control control;
 
     public void start() {
         Objects.requireNonNull(device, "device must not be null");
-        Objects.requireNonNull(encoder, "encoder must not be null");
         Objects.requireNonNull(codec, "codec must not be null");
+        if (encoder != null && encoder.getCodec() != codec) {
+            throw new IllegalArgumentException("encoder " + encoder.getName() + " does not match codec " + codec.getName());
+        }
+        Objects.requireNonNull(decoderFactory, "decoderFactory must not be null");
+        Objects.requireNonNull(decoderOptions, "decoderOptions must not be null");
+        Objects.requireNonNull(framePoolPolicy, "framePoolPolicy must not be null");
+        if (onPooledFrame != null) {
+            framePool = new FramePool(framePoolSize, framePoolPolicy);
+        }
+        if ((latestFrameEnabled || onLatestFrame != null) && frameMailbox == null) {
+            frameMailbox = new FrameMailbox();
+        }
 
         pushServer();
         Thread.ofVirtual().start(this::startServer);
@@ -95,6 +255,9 @@ public class ScrcpyClient implements Closeable {
             throw new RuntimeException(e);
         }
         Thread.ofPlatform().start(this::streamLoop);
+        if (onLatestFrame != null) {
+            Thread.ofPlatform().start(this::latestFrameLoop);
+        }
     }
 
     void pushServer() {
@@ -112,7 +275,7 @@ public class ScrcpyClient implements Closeable {
     }
 
     void startServer() {
-        String[] commands = {
+        List<String> commands = new ArrayList<>(List.of(
                 ADB_PATH,
                 "-s",
                 device,
@@ -126,17 +289,20 @@ public class ScrcpyClient implements Closeable {
                 "max_size=" + maxWidth,
                 "max_fps=" + maxFps,
                 "video_bit_rate=" + bitrate,
-                "video_encoder=" + encoder.getName(),
+                "video_encoder=" + getVideoEncoder().getName(),
                 "video_codec=" + codec.getName(),
                 "tunnel_forward=true",
-                "send_frame_meta=false",
+                "send_frame_meta=true",
                 "control=true",
                 "audio=false",
                 "show_touches=false",
                 "stay_awake=false",
                 "power_off_on_close=false",
-                "clipboard_autosync=false",
-        };
+                "clipboard_autosync=false"
+        ));
+        if (crop != null) {
+            commands.add("crop=" + crop.width + ":" + crop.height + ":" + crop.x + ":" + crop.y);
+        }
         try {
             ProcessBuilder pb = new ProcessBuilder(commands);
             pb.redirectErrorStream(true);
@@ -176,7 +342,8 @@ public class ScrcpyClient implements Closeable {
             throw new RuntimeException("转发视频tcp连接失败 找不到可用的本机端口");
         }
         for (int i = 0, len = connectionTimeout / 100; i < len; i++) {
-            Socket socket = new Socket("127.0.0.1", videoPort);
+            // 视频socket通过 SocketChannel 创建，解复用器可以直接读入堆外缓冲区
+            Socket socket = SocketChannel.open(new InetSocketAddress("127.0.0.1", videoPort)).socket();
             // 关闭Nagle算法
             socket.setTcpNoDelay(true);
             // 开启TCP KeepAlive
@@ -223,72 +390,329 @@ public class ScrcpyClient implements Closeable {
             throw new RuntimeException("连接控制socket失败 找不到可以使用的端口");
         }
 
-        InputStream inputStream = videoSocket.getInputStream();
-        byte[] deviceNameBytes = inputStream.readNBytes(64);
-        for (int i = 0; i < deviceNameBytes.length; i++) {
-            if (deviceNameBytes[i] == 0x00) {
-                deviceName = new String(deviceNameBytes, 0, i, StandardCharsets.UTF_8);
-                break;
-            }
-        }
+        demuxer = new ScrcpyDemuxer(videoSocket.getChannel());
+        deviceName = demuxer.readDeviceName();
         if (deviceName == null) {
             throw new RuntimeException("未收到设备名称！");
         }
 
-        byte[] resolutionBytes = inputStream.readNBytes(4);
-        resolutionWidth = ((resolutionBytes[0] & 0XFF) << 8) | (resolutionBytes[1] & 0XFF);
-        resolutionHeight = ((resolutionBytes[2] & 0XFF) << 8) | (resolutionBytes[3] & 0XFF);
+        demuxer.readCodecMeta();
+        resolutionWidth = demuxer.getWidth();
+        resolutionHeight = demuxer.getHeight();
 
         control = new Control(controlSocket, resolutionWidth, resolutionHeight);
     }
 
     void streamLoop() {
         alive = true;
-        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(videoSocket.getInputStream(), 0)) {
-//            grabber.setFormat(codec.getName());
-            grabber.setFormat("h264");
+        try (VideoDecoder decoder = decoderFactory.get()) {
+            // 以服务器在 codec meta 中声明的编码为准
+            Codec streamCodec = demuxer.getCodec() != null ? demuxer.getCodec() : codec;
+            decoder.configure(streamCodec, resolutionWidth, resolutionHeight, decoderOptions);
+            decoderInfo = decoder.getInfo();
+            InputStream videoInputStream = videoSocket.getInputStream();
+            // 解码器是否已经从关键帧开始解码
+            boolean decoding = false;
+            boolean keyFrameRequested = false;
+            long lastKeyFrameNanos = 0;
+            long lastKeyFrameRequestNanos = 0;
+            VideoPacket packet;
+            while (alive && (packet = demuxer.readPacket()) != null) {
+                if (onPacket != null) {
+                    onPacket.accept(packet);
+                }
+                if (packet.isConfig()) {
+                    ByteBuffer config = packet.data();
+                    byte[] bytes = new byte[config.remaining()];
+                    config.get(bytes);
+                    synchronized (configLock) {
+                        configPacket = bytes;
+                        for (Consumer<VideoPacket> packetListener : packetListeners) {
+                            packetListener.accept(packet);
+                        }
+                    }
+                    // 编码器重新启动，PTS的起点可能变化
+                    lagMonitor.reset();
+                    // 配置包只是缓存在解码器中，不会触发解码
+                    decoder.submit(packet);
+                    continue;
+                }
+                for (Consumer<VideoPacket> packetListener : packetListeners) {
+                    packetListener.accept(packet);
+                }
+                if (!hasFrameConsumer()) {
+                    decoding = false;
+                    continue;
+                }
+                DecodeMode mode = decodeMode;
+                long now = System.nanoTime();
+                if (packet.isKeyFrame()) {
+                    lastKeyFrameNanos = now;
+                }
+                if (mode == DecodeMode.KEY_FRAMES_ONLY && !packet.isKeyFrame()) {
+                    // 跳过了非关键帧，之后切回其他模式时必须从关键帧重新开始
+                    decoding = false;
+                    keyFrameRequested = false;
+                    if (now - lastKeyFrameNanos > keyFrameIntervalMillis * 1_000_000L
+                            && now - lastKeyFrameRequestNanos > keyFrameIntervalMillis * 1_000_000L) {
+                        keyFrameRequester.request();
+                        lastKeyFrameRequestNanos = now;
+                    }
+                    skippedPacketCount++;
+                    continue;
+                }
+                boolean lagging = isLagging(packet, videoInputStream);
+                if (decoding && lagging) {
+                    // 追帧：丢弃积压的视频包直到延迟恢复正常后的第一个关键帧
+                    decoding = false;
+                    decoder.flush();
+                    catchUpCount++;
+                }
+                if (!decoding) {
+                    // 中途开始解码必须从关键帧开始，请求服务器立即发送一个关键帧
+                    if (!packet.isKeyFrame() || lagging) {
+                        if (!keyFrameRequested) {
+                            keyFrameRequester.request();
+                            keyFrameRequested = true;
+                        } else if (packet.isKeyFrame()) {
+                            // 请求到的关键帧仍处于积压中，积压消化完之后需要再请求一个
+                            keyFrameRequested = false;
+                        }
+                        skippedPacketCount++;
+                        continue;
+                    }
+                    decoding = true;
+                    keyFrameRequested = false;
+                }
+                long decodeStart = System.nanoTime();
+                decoder.submit(packet);
+                while (true) {
+                    if (mode == DecodeMode.EVERY_NTH && decodedFrameCount % Math.max(1, decodeInterval) != 0) {
+                        // 这一帧不输出，省去像素格式转换
+                        if (!decoder.discard()) {
+                            break;
+                        }
+                        decodedFrameCount++;
+                        continue;
+                    }
+                    Frame frame = decoder.receive();
+                    if (frame == null) {
+                        break;
+                    }
+                    decodedFrameCount++;
+                    long decodeNanos = System.nanoTime() - decodeStart;
+                    decodeTimer.record(decodeNanos);
+                    if (framePipeline != null) {
+                        framePipeline.getDecodeTimer().record(decodeNanos);
+                    }
+                    dispatchFrame(frame);
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 把解码后的帧交给所有消费者
+     *
+     * @param frame 解码器输出的帧，返回后会被解码器复用
+     */
+    void dispatchFrame(Frame frame) throws InterruptedException {
+        control.resolutionWidth = frame.imageWidth;
+        control.resolutionHeight = frame.imageHeight;
 
-            // 核心低延迟参数
-//            grabber.setOption("fflags", "nobuffer");       // 禁用输入缓冲
-            grabber.setOption("flags", "low_delay");       // 全局低延迟模式
-            grabber.setOption("tune", "zerolatency");      // 零延迟调优
-            grabber.setOption("analyzeduration", "10");    // 减少流分析时间(ms)
-            grabber.setOption("probesize", "32");          // 最小化探测数据量
-//            grabber.setOption("buffer_size", "1024000"); // 1MB
+        if (onFrame != null) {
+            onFrame.accept(frame.clone());
+        }
+        if (framePool != null) {
+            PooledFrame pooledFrame = framePool.acquire(frame);
+            if (pooledFrame != null) {
+                onPooledFrame.accept(pooledFrame);
+            }
+        }
+        if (frameMailbox != null) {
+            frameMailbox.publish(frame);
+        }
+        if (framePipeline != null) {
+            framePipeline.submit(frame);
+        }
+        if (framePublisher != null) {
+            framePublisher.publish(frame);
+        }
+        for (ScaledOutput scaledOutput : scaledOutputs) {
+            scaledOutput.process(frame, decoderOptions.getPixelFormat());
+        }
+        for (RegionSubscription regionSubscription : regionSubscriptions) {
+            regionSubscription.accept(frame);
+        }
+        for (SharedFrameExporter sharedFrameExporter : sharedFrameExporters) {
+            sharedFrameExporter.export(frame, decoderOptions.getPixelFormat());
+        }
+        ScreenStateIndex stateIndex = screenStateIndex;
+        if (stateIndex != null) {
+            stateIndex.update(frame);
+        }
+    }
 
-            grabber.setOption("rtsp_transport", "tcp");    // TCP传输更稳定
+    /**
+     * 解码是否已经落后到需要追帧
+     */
+    boolean isLagging(VideoPacket packet, InputStream videoInputStream) throws IOException {
+        long lagMicros = lagMonitor.update(packet);
+        if (catchUpLagMillis <= 0 && catchUpPendingBytes <= 0) {
+            return false;
+        }
+        if (catchUpLagMillis > 0 && lagMicros > catchUpLagMillis * 1000L) {
+            return true;
+        }
+        // videoSocket 由 SocketChannel 创建，其输入流的 available() 返回内核接收缓冲区中未读的字节数(FIONREAD)。
+        // 解复用器直接从通道读取，没有用户态缓冲，所以这就是全部积压；换成带缓冲的读取方式时这里会低估积压
+        return catchUpPendingBytes > 0 && videoInputStream.available() > catchUpPendingBytes;
+    }
 
-            // 解码优化
-            grabber.setOption("avioflags", "direct");      // 减少缓冲
-            grabber.setVideoOption("threads", "1");         // 单线程解码(避免并行开销) 核心 设置这个之后速度快很多
+    /**
+     * 是否有需要解码后视频帧的消费者，没有时只解复用不解码
+     */
+    boolean hasFrameConsumer() {
+        return onFrame != null || framePool != null || frameMailbox != null || framePipeline != null
+                || framePublisher != null && framePublisher.hasSubscribers()
+                || screenStateIndex != null || !regionSubscriptions.isEmpty() || !sharedFrameExporters.isEmpty()
+                || hasScaledOutputSubscribers();
+    }
 
-            grabber.setOption("hwaccel", "auto");
+    private boolean hasScaledOutputSubscribers() {
+        for (ScaledOutput scaledOutput : scaledOutputs) {
+            if (scaledOutput.hasSubscribers()) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-            grabber.start();
+    void latestFrameLoop() {
+        long sequence = 0;
+        while (!frameMailbox.isClosed()) {
+            PooledFrame pooledFrame;
+            try {
+                pooledFrame = frameMailbox.awaitNext(sequence, 100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (pooledFrame == null) {
+                continue;
+            }
+            try {
+                sequence = pooledFrame.sequence();
+                onLatestFrame.accept(pooledFrame.frame());
+            } finally {
+                pooledFrame.release();
+            }
+        }
+    }
 
-            // 2.创建一个帧-->图片的转换器
-            while (alive) {
-                Frame frame = grabber.grabFrame(false, true, true, false, true);
-                if (frame.image == null) {
-                    continue;
+    /**
+     * 获取最新解码的一帧，需要先开启 latestFrameEnabled 或设置 onLatestFrame
+     *
+     * @return 最新帧(用完后必须调用 {@link PooledFrame#release()})，还没有帧时返回 null
+     */
+    public PooledFrame latestFrame() {
+        return frameMailbox == null ? null : frameMailbox.latestFrame();
+    }
+
+    /**
+     * 当前画面的最新一帧。第一次调用时如果没有开启 latestFrameEnabled 会自动开启，并最多等待1秒直到下一帧解码完成
+     *
+     * @return 最新帧(用完后必须调用 {@link PooledFrame#release()})，没有帧时返回 null
+     */
+    public PooledFrame snapshot() {
+        FrameMailbox mailbox = frameMailbox;
+        if (mailbox == null) {
+            synchronized (this) {
+                mailbox = frameMailbox;
+                if (mailbox == null) {
+                    frameMailbox = mailbox = new FrameMailbox();
                 }
-                control.resolutionWidth = frame.imageWidth;
-                control.resolutionHeight = frame.imageHeight;
+            }
+        }
+        PooledFrame frame = mailbox.latestFrame();
+        if (frame == null) {
+            try {
+                frame = mailbox.awaitNext(0, 1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * 最新帧转换成的图像(BGR24 或 GRAY8 输出)，按帧序号缓存，同一帧的并发调用共用一次转换
+     *
+     * @return 没有帧时结果为null
+     */
+    public CompletableFuture<BufferedImage> snapshotImage() {
+        return getSnapshotCache().image();
+    }
 
-                if (onFrame != null) {
-                    onFrame.accept(frame.clone());
+    /**
+     * 最新帧编码后的图片，按帧序号和格式缓存，编码在共享的有界线程池中执行
+     *
+     * @param format ImageIO 的格式名，例如 png、jpg
+     * @return 没有帧时结果为null
+     */
+    public CompletableFuture<byte[]> snapshotEncoded(String format) {
+        return getSnapshotCache().encoded(format);
+    }
+
+    private SnapshotCache getSnapshotCache() {
+        SnapshotCache cache = snapshotCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = snapshotCache;
+                if (cache == null) {
+                    snapshotCache = cache = new SnapshotCache(this::snapshot);
                 }
             }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        } finally {
-            close();
         }
+        return cache;
     }
 
     @Override
     public void close() {
         alive = false;
+        if (framePool != null) {
+            framePool.close();
+        }
+        if (frameMailbox != null) {
+            frameMailbox.close();
+        }
+        if (framePipeline != null) {
+            framePipeline.close();
+        }
+        if (framePublisher != null) {
+            framePublisher.close();
+        }
+        for (ScaledOutput scaledOutput : scaledOutputs) {
+            scaledOutput.close();
+        }
+        for (RegionSubscription regionSubscription : regionSubscriptions) {
+            regionSubscription.close();
+        }
+        for (SharedFrameExporter sharedFrameExporter : sharedFrameExporters) {
+            sharedFrameExporter.close();
+        }
+        // 录像、回放缓冲区、转发服务等需要关闭的监听器都实现了 Closeable
+        for (Consumer<VideoPacket> packetListener : packetListeners) {
+            if (packetListener instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
         if (videoSocket != null) {
             try {
                 videoSocket.close();
@@ -321,6 +745,14 @@ public class ScrcpyClient implements Closeable {
         this.maxWidth = maxWidth;
     }
 
+    public Rectangle getCrop() {
+        return crop;
+    }
+
+    public void setCrop(Rectangle crop) {
+        this.crop = crop;
+    }
+
     public int getBitrate() {
         return bitrate;
     }
@@ -385,6 +817,13 @@ public class ScrcpyClient implements Closeable {
         this.encoder = encoder;
     }
 
+    /**
+     * 实际使用的编码器
+     */
+    Encoder getVideoEncoder() {
+        return encoder != null ? encoder : Encoder.defaultOf(codec);
+    }
+
     public Codec getCodec() {
         return codec;
     }
@@ -393,6 +832,117 @@ public class ScrcpyClient implements Closeable {
         this.codec = codec;
     }
 
+    public Supplier<? extends VideoDecoder> getDecoderFactory() {
+        return decoderFactory;
+    }
+
+    public void setDecoderFactory(Supplier<? extends VideoDecoder> decoderFactory) {
+        this.decoderFactory = decoderFactory;
+    }
+
+    public DecoderOptions getDecoderOptions() {
+        return decoderOptions;
+    }
+
+    public void setDecoderOptions(DecoderOptions decoderOptions) {
+        this.decoderOptions = decoderOptions;
+    }
+
+    /**
+     * 解码器实际生效的参数，解码器打开之前返回 null
+     */
+    public DecoderInfo getDecoderInfo() {
+        return decoderInfo;
+    }
+
+    /**
+     * 当前使用的解码器名称，解码器打开之前返回 null
+     */
+    public String getDecoderName() {
+        return decoderInfo == null ? null : decoderInfo.getName();
+    }
+
+    /**
+     * 解码耗时统计(从送入视频包到取出帧)，可用于对比不同解码器的性能
+     */
+    public StageTimer getDecodeTimer() {
+        return decodeTimer;
+    }
+
+    public int getCatchUpLagMillis() {
+        return catchUpLagMillis;
+    }
+
+    public void setCatchUpLagMillis(int catchUpLagMillis) {
+        this.catchUpLagMillis = catchUpLagMillis;
+    }
+
+    public int getCatchUpPendingBytes() {
+        return catchUpPendingBytes;
+    }
+
+    public void setCatchUpPendingBytes(int catchUpPendingBytes) {
+        this.catchUpPendingBytes = catchUpPendingBytes;
+    }
+
+    /**
+     * 当前解码延迟(毫秒)，基于视频包PTS与本机接收时间的估计
+     */
+    public long getDecodeLagMillis() {
+        return lagMonitor.getLagMicros() / 1000;
+    }
+
+    /**
+     * 触发追帧的次数
+     */
+    public long getCatchUpCount() {
+        return catchUpCount;
+    }
+
+    /**
+     * 未经解码直接丢弃的视频包数量(追帧以及等待关键帧期间)
+     */
+    public long getSkippedPacketCount() {
+        return skippedPacketCount;
+    }
+
+    public DecodeMode getDecodeMode() {
+        return decodeMode;
+    }
+
+    /**
+     * 切换解码模式，运行时切换不需要重新连接。从 KEY_FRAMES_ONLY 切回其他模式时会请求一个关键帧，从关键帧开始解码
+     */
+    public void setDecodeMode(DecodeMode decodeMode) {
+        this.decodeMode = Objects.requireNonNull(decodeMode, "decodeMode must not be null");
+    }
+
+    public int getDecodeInterval() {
+        return decodeInterval;
+    }
+
+    public void setDecodeInterval(int decodeInterval) {
+        if (decodeInterval <= 0) {
+            throw new IllegalArgumentException("decodeInterval must be greater than 0");
+        }
+        this.decodeInterval = decodeInterval;
+    }
+
+    public int getKeyFrameIntervalMillis() {
+        return keyFrameIntervalMillis;
+    }
+
+    public void setKeyFrameIntervalMillis(int keyFrameIntervalMillis) {
+        this.keyFrameIntervalMillis = keyFrameIntervalMillis;
+    }
+
+    /**
+     * 已解码的帧数(包括 EVERY_NTH 模式下解码后未输出的帧)
+     */
+    public long getDecodedFrameCount() {
+        return decodedFrameCount;
+    }
+
     public Consumer<Frame> getOnFrame() {
         return onFrame;
     }
@@ -401,6 +951,282 @@ public class ScrcpyClient implements Closeable {
         this.onFrame = onFrame;
     }
 
+    public int getFramePoolSize() {
+        return framePoolSize;
+    }
+
+    public void setFramePoolSize(int framePoolSize) {
+        this.framePoolSize = framePoolSize;
+    }
+
+    public PoolExhaustedPolicy getFramePoolPolicy() {
+        return framePoolPolicy;
+    }
+
+    public void setFramePoolPolicy(PoolExhaustedPolicy framePoolPolicy) {
+        this.framePoolPolicy = framePoolPolicy;
+    }
+
+    public Consumer<PooledFrame> getOnPooledFrame() {
+        return onPooledFrame;
+    }
+
+    public void setOnPooledFrame(Consumer<PooledFrame> onPooledFrame) {
+        this.onPooledFrame = onPooledFrame;
+    }
+
+    public Consumer<Frame> getOnLatestFrame() {
+        return onLatestFrame;
+    }
+
+    public void setOnLatestFrame(Consumer<Frame> onLatestFrame) {
+        this.onLatestFrame = onLatestFrame;
+    }
+
+    public boolean isLatestFrameEnabled() {
+        return latestFrameEnabled;
+    }
+
+    public void setLatestFrameEnabled(boolean latestFrameEnabled) {
+        this.latestFrameEnabled = latestFrameEnabled;
+    }
+
+    public FrameMailbox getFrameMailbox() {
+        return frameMailbox;
+    }
+
+    /**
+     * 最新帧信箱中被覆盖而从未被消费的帧数
+     */
+    public long getStaleFrameCount() {
+        return frameMailbox == null ? 0 : frameMailbox.getDroppedCount();
+    }
+
+    public FramePipeline<?> getFramePipeline() {
+        return framePipeline;
+    }
+
+    public void setFramePipeline(FramePipeline<?> framePipeline) {
+        this.framePipeline = framePipeline;
+    }
+
+    /**
+     * 多订阅者帧发布器，第一次调用时创建。可以在 {@link #start()} 之前或之后订阅
+     */
+    public FramePublisher getFramePublisher() {
+        FramePublisher publisher = framePublisher;
+        if (publisher == null) {
+            synchronized (this) {
+                publisher = framePublisher;
+                if (publisher == null) {
+                    framePublisher = publisher = new FramePublisher();
+                }
+            }
+        }
+        return publisher;
+    }
+
+    /**
+     * 声明一个缩小分辨率的输出，解码后由原生缩放生成，只有在有订阅者时才会计算
+     *
+     * @param maxSize 长边的最大像素数
+     * @return 输出，通过 {@link ScaledOutput#getPublisher()} 订阅
+     */
+    public ScaledOutput addScaledOutput(int maxSize) {
+        ScaledOutput scaledOutput = new ScaledOutput(maxSize);
+        scaledOutputs.add(scaledOutput);
+        return scaledOutput;
+    }
+
+    public void removeScaledOutput(ScaledOutput scaledOutput) {
+        if (scaledOutputs.remove(scaledOutput)) {
+            scaledOutput.close();
+        }
+    }
+
+    public List<ScaledOutput> getScaledOutputs() {
+        return List.copyOf(scaledOutputs);
+    }
+
+    /**
+     * 订阅画面中的一个区域，消费者在解码线程中收到该区域的零拷贝视图，见 {@link RegionSubscription}
+     *
+     * @param region   归一化坐标，与 Control.touch 一致
+     * @param consumer 区域视图回调，视图只在回调期间有效
+     * @return 订阅，close 后取消
+     */
+    public RegionSubscription subscribeRegion(NormalizedRect region, Consumer<Frame> consumer) {
+        RegionSubscription subscription = new RegionSubscription(region, consumer, regionSubscriptions::remove);
+        regionSubscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * 开始把解码后的帧导出到内存映射文件，供同一台机器上的其他进程读取，文件布局和读取方法见 {@link SharedFrameExporter}
+     *
+     * @param path      映射文件的路径，Linux 上建议放在 /dev/shm 下
+     * @param slotCount 槽位数量
+     */
+    public SharedFrameExporter startSharedFrameExport(Path path, int slotCount) {
+        if (demuxer == null) {
+            throw new IllegalStateException("必须先调用 start()");
+        }
+        int slotCapacity = SharedFrameExporter.slotCapacity(resolutionWidth, resolutionHeight, decoderOptions.getPixelFormat());
+        SharedFrameExporter exporter = new SharedFrameExporter(path, slotCount, slotCapacity);
+        sharedFrameExporters.add(exporter);
+        return exporter;
+    }
+
+    public void stopSharedFrameExport(SharedFrameExporter exporter) {
+        sharedFrameExporters.remove(exporter);
+        exporter.close();
+    }
+
+    public ScreenStateIndex getScreenStateIndex() {
+        return screenStateIndex;
+    }
+
+    public void setScreenStateIndex(ScreenStateIndex screenStateIndex) {
+        this.screenStateIndex = screenStateIndex;
+    }
+
+    /**
+     * 添加视频包监听器，在读取视频流的线程中调用，包数据只在回调期间有效
+     */
+    public void addPacketListener(Consumer<VideoPacket> listener) {
+        packetListeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    public void removePacketListener(Consumer<VideoPacket> listener) {
+        packetListeners.remove(listener);
+    }
+
+    /**
+     * 先加入监听器再把当前的配置包交给它，与读取视频流的线程分发配置包互斥：
+     * 之后到达的配置包一定能收到，已经到达的配置包不会因为快照早于加入而漏掉
+     */
+    private void addSeededListener(Consumer<VideoPacket> listener) {
+        synchronized (configLock) {
+            packetListeners.add(listener);
+            byte[] config = configPacket;
+            if (config != null) {
+                listener.accept(VideoPacket.ofConfig(config));
+            }
+        }
+    }
+
+    /**
+     * 最近一次收到的配置包的拷贝，还没有收到时返回null
+     */
+    public byte[] getConfigPacket() {
+        byte[] config = configPacket;
+        return config == null ? null : config.clone();
+    }
+
+    /**
+     * 开始录像：压缩视频包直接写入文件，不经过解码器。容器格式由扩展名决定(mp4、mkv等)。
+     * 会请求服务端立即发送一个关键帧，文件从该关键帧开始
+     *
+     * @return 录像，通过 {@link #stopRecording(StreamRecorder)} 结束
+     * @throws RecorderException 无法根据文件名确定容器格式，或者无法创建文件
+     */
+    public StreamRecorder startRecording(String path) {
+        return startRecording(path, null);
+    }
+
+    /**
+     * 开始录像，录像过程中写入失败时录像自行结束并从会话中移除，然后调用 onError
+     *
+     * @param onError 写入失败的回调，在录像线程中调用，可以为null
+     * @throws RecorderException 无法根据文件名确定容器格式，或者无法创建文件
+     */
+    public StreamRecorder startRecording(String path, Consumer<RecorderException> onError) {
+        if (demuxer == null) {
+            throw new IllegalStateException("必须先调用 start()");
+        }
+        Codec streamCodec = demuxer.getCodec() != null ? demuxer.getCodec() : codec;
+        StreamRecorder recorder = new StreamRecorder(path, streamCodec, resolutionWidth, resolutionHeight, null);
+        recorder.setOnError(e -> {
+            packetListeners.remove(recorder);
+            if (onError != null) {
+                onError.accept(e);
+            }
+        });
+        recorder.setKeyFrameRequester(keyFrameRequester::request);
+        addSeededListener(recorder);
+        keyFrameRequester.request();
+        return recorder;
+    }
+
+    /**
+     * 结束录像并写入文件尾
+     */
+    public void stopRecording(StreamRecorder recorder) {
+        packetListeners.remove(recorder);
+        recorder.close();
+    }
+
+    /**
+     * 开始在堆外环形缓冲区中保留最近一段时间的压缩视频包，需要时调用 {@link ReplayBuffer#dump(String)} 写成文件
+     *
+     * @param maxDurationMillis 保留的时长
+     * @param maxBytes          包数据最多占用的字节数，创建时一次性分配
+     */
+    public ReplayBuffer startReplayBuffer(long maxDurationMillis, int maxBytes) {
+        if (demuxer == null) {
+            throw new IllegalStateException("必须先调用 start()");
+        }
+        Codec streamCodec = demuxer.getCodec() != null ? demuxer.getCodec() : codec;
+        ReplayBuffer replayBuffer = new ReplayBuffer(streamCodec, resolutionWidth, resolutionHeight, null,
+                maxDurationMillis, maxBytes);
+        addSeededListener(replayBuffer);
+        return replayBuffer;
+    }
+
+    public void stopReplayBuffer(ReplayBuffer replayBuffer) {
+        packetListeners.remove(replayBuffer);
+        replayBuffer.close();
+    }
+
+    /**
+     * 创建转发服务，把本会话的视频流原样转发给本机的其他客户端，之后调用
+     * {@link RelayServer#listenTcp(int)} 或 {@link RelayServer#listenWebSocket(int)} 开始监听。
+     * 客户端需要等待关键帧时会通过 {@link Control#resetVideo()} 请求服务器立即发送
+     */
+    public RelayServer startRelay() {
+        if (demuxer == null) {
+            throw new IllegalStateException("必须先调用 start()");
+        }
+        RelayServer relayServer = new RelayServer(deviceName, demuxer.getCodecId(), resolutionWidth, resolutionHeight, null);
+        relayServer.setKeyFrameRequester(keyFrameRequester::request);
+        addSeededListener(relayServer);
+        return relayServer;
+    }
+
+    public void stopRelay(RelayServer relayServer) {
+        packetListeners.remove(relayServer);
+        relayServer.close();
+    }
+
+    public Consumer<VideoPacket> getOnPacket() {
+        return onPacket;
+    }
+
+    public void setOnPacket(Consumer<VideoPacket> onPacket) {
+        this.onPacket = onPacket;
+    }
+
+    public FramePool getFramePool() {
+        return framePool;
+    }
+
+    /**
+     * 因帧池耗尽而被丢弃的帧数
+     */
+    public long getDroppedFrameCount() {
+        return framePool == null ? 0 : framePool.getDroppedCount();
+    }
+
     public String getDeviceName() {
         return deviceName;
     }
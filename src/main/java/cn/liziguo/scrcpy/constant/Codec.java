@@ -5,17 +5,38 @@ package cn.liziguo.scrcpy.constant;
  * @date 2025-06-10
  */
 public enum Codec {
-    H264("h264"),
-    H265("h265"),
-    AV1("av1");
+    H264("h264", 0x68_32_36_34),
+    H265("h265", 0x68_32_36_35),
+    AV1("av1", 0x00_61_76_31);
 
     private final String name;
+    /**
+     * scrcpy-server 在视频流头部(codec meta)中发送的编码id，即编码名称的ASCII码
+     */
+    private final int id;
 
-    Codec(String name) {
+    Codec(String name, int id) {
         this.name = name;
+        this.id = id;
     }
 
     public String getName() {
         return name;
     }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * 根据 scrcpy-server 发送的编码id查找编码，找不到返回 null
+     */
+    public static Codec ofId(int id) {
+        for (Codec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,22 @@
+package cn.liziguo.scrcpy.constant;
+
+/**
+ * 解码模式，可以在运行时切换
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public enum DecodeMode {
+    /**
+     * 解码并输出每一帧
+     */
+    FULL,
+    /**
+     * 只解码关键帧，非关键帧直接丢弃不解码，并按固定间隔请求服务器发送关键帧。适合只需要定时刷新缩略图的场景
+     */
+    KEY_FRAMES_ONLY,
+    /**
+     * 每一帧都要解码(非关键帧依赖前面的帧)，但每N帧只输出一帧，省去其余帧的像素格式转换和回调开销
+     */
+    EVERY_NTH
+}
@@ -5,18 +5,48 @@ package cn.liziguo.scrcpy.constant;
  * @date 2025-06-10
  */
 public enum Encoder {
-    OMX_GOOGLE_H264_ENCODER("OMX.google.h264.encoder"),
-    OMX_QCOM_VIDEO_ENCODER_AVC("OMX.qcom.video.encoder.avc"),
-    C2_QTI_AVC_ENCODER("c2.qti.avc.encoder"),
-    C2_ANDROID_AVC_ENCODER("c2.android.avc.encoder");
+    OMX_GOOGLE_H264_ENCODER("OMX.google.h264.encoder", Codec.H264),
+    OMX_QCOM_VIDEO_ENCODER_AVC("OMX.qcom.video.encoder.avc", Codec.H264),
+    C2_QTI_AVC_ENCODER("c2.qti.avc.encoder", Codec.H264),
+    C2_ANDROID_AVC_ENCODER("c2.android.avc.encoder", Codec.H264),
+
+    C2_ANDROID_HEVC_ENCODER("c2.android.hevc.encoder", Codec.H265),
+    OMX_QCOM_VIDEO_ENCODER_HEVC("OMX.qcom.video.encoder.hevc", Codec.H265),
+    C2_QTI_HEVC_ENCODER("c2.qti.hevc.encoder", Codec.H265),
+    C2_EXYNOS_HEVC_ENCODER("c2.exynos.hevc.encoder", Codec.H265),
+    C2_MTK_HEVC_ENCODER("c2.mtk.hevc.encoder", Codec.H265),
+
+    C2_ANDROID_AV1_ENCODER("c2.android.av1.encoder", Codec.AV1),
+    C2_EXYNOS_AV1_ENCODER("c2.exynos.av1.encoder", Codec.AV1),
+    C2_MTK_AV1_ENCODER("c2.mtk.av1.encoder", Codec.AV1);
 
     private final String name;
+    /**
+     * 编码器输出的视频编码
+     */
+    private final Codec codec;
 
-    Encoder(String name) {
+    Encoder(String name, Codec codec) {
         this.name = name;
+        this.codec = codec;
     }
 
     public String getName() {
         return name;
     }
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    /**
+     * 各编码的默认编码器(安卓系统自带的软件编码器，兼容性最好)
+     */
+    public static Encoder defaultOf(Codec codec) {
+        return switch (codec) {
+            case H264 -> OMX_GOOGLE_H264_ENCODER;
+            case H265 -> C2_ANDROID_HEVC_ENCODER;
+            case AV1 -> C2_ANDROID_AV1_ENCODER;
+        };
+    }
 }
@@ -0,0 +1,22 @@
+package cn.liziguo.scrcpy.constant;
+
+/**
+ * 帧订阅者的溢出策略：订阅者的队列满了(处理不过来)时如何处理新帧
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public enum OverflowPolicy {
+    /**
+     * 只保留最新帧：队列满时丢弃队列中最旧的帧
+     */
+    LATEST_ONLY,
+    /**
+     * 每N帧取一帧，队列满时同 LATEST_ONLY
+     */
+    EVERY_NTH,
+    /**
+     * 无损有界队列：队列满时发布方(解码线程)等待订阅者消费，不丢帧
+     */
+    LOSSLESS_BOUNDED
+}
@@ -0,0 +1,22 @@
+package cn.liziguo.scrcpy.constant;
+
+/**
+ * 帧池耗尽策略：帧池中所有缓冲区都被消费者占用时，解码线程如何处理新解码出来的帧
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public enum PoolExhaustedPolicy {
+    /**
+     * 丢弃最新帧：直接丢弃刚解码出来的帧，已经借出的帧不受影响
+     */
+    DROP_NEWEST,
+    /**
+     * 丢弃最旧帧：强制回收借出时间最久的帧并复用它的缓冲区，被回收的帧会失效（{@code PooledFrame.isValid()} 返回 false）
+     */
+    DROP_OLDEST,
+    /**
+     * 阻塞：解码线程等待消费者释放帧，会反压到socket
+     */
+    BLOCK
+}
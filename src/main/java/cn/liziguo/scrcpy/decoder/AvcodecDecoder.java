@@ -0,0 +1,354 @@
+package cn.liziguo.scrcpy.decoder;
+
+import cn.liziguo.scrcpy.constant.Codec;
+import cn.liziguo.scrcpy.exception.DecoderException;
+import cn.liziguo.scrcpy.frame.FrameUtil;
+import cn.liziguo.scrcpy.stream.VideoPacket;
+import org.bytedeco.ffmpeg.avcodec.AVCodec;
+import org.bytedeco.ffmpeg.avcodec.AVCodecContext;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avutil.AVDictionary;
+import org.bytedeco.ffmpeg.avutil.AVFrame;
+import org.bytedeco.ffmpeg.swscale.SwsContext;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.javacv.Frame;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import static org.bytedeco.ffmpeg.global.avcodec.*;
+import static org.bytedeco.ffmpeg.global.avutil.*;
+import static org.bytedeco.ffmpeg.global.swscale.*;
+
+/**
+ * 直接调用 libavcodec 的解码器：{@link #submit(VideoPacket)} 送入一个完整的视频包，{@link #receive()} 取出解码后的帧。
+ *
+ * <p>与 {@code FFmpegFrameGrabber} 不同，这里没有 libavformat 的格式探测和分帧，
+ * 包边界由 {@link cn.liziguo.scrcpy.stream.ScrcpyDemuxer} 按 scrcpy 包头给出，第一个关键帧到达后即可出图。
+ *
+ * <p>输出的帧默认为 BGR24(与 {@code grabber.grabFrame()} 的默认输出一致)，可以通过 {@link DecoderOptions} 修改。返回的 {@link Frame} 会在下一次
+ * {@link #receive()} 时被覆盖，需要保留时请拷贝。非线程安全，只能在解码线程中使用。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class AvcodecDecoder implements VideoDecoder {
+
+    private static final byte[] NO_CONFIG = new byte[0];
+
+    private AVCodecContext context;
+    private AVPacket avPacket;
+    private AVFrame avFrame;
+
+    /**
+     * avPacket 因为解码器返回 EAGAIN 还没有送入，取出帧之后重新送入
+     */
+    private boolean packetPending;
+    /**
+     * 尚未送入解码器的配置包，scrcpy 的配置包需要拼接在下一个包的前面
+     */
+    private byte[] config = NO_CONFIG;
+
+    private SwsContext swsContext;
+    /**
+     * 最近一次 {@link #receive()} 返回的帧：convertedFrame 或 nativeFrame
+     */
+    private Frame frame;
+    /**
+     * 像素格式转换的输出帧
+     */
+    private Frame convertedFrame;
+    /**
+     * NATIVE 模式下直接引用解码器平面的帧
+     */
+    private Frame nativeFrame;
+    private PointerPointer<?> frameData;
+    private IntPointer frameLinesize;
+
+    private String name = "avcodec";
+    private PixelFormat pixelFormat = PixelFormat.BGR24;
+    private DecoderInfo info;
+
+    @Override
+    public void configure(Codec codec, int width, int height, DecoderOptions options) {
+        AVCodec decoder = findDecoder(codec);
+        if (decoder == null) {
+            throw new DecoderException("找不到解码器: " + codec.getName());
+        }
+        name = "avcodec:" + decoder.name().getString();
+        context = avcodec_alloc_context3(decoder);
+        if (context == null) {
+            throw new DecoderException("分配解码器上下文失败");
+        }
+        // 低延迟模式：不缓存帧，一个包进一帧出
+        if (options.isLowDelay()) {
+            context.flags(context.flags() | AV_CODEC_FLAG_LOW_DELAY);
+        }
+        // 默认单线程解码：帧级多线程会引入与线程数相同的帧延迟
+        context.thread_count(options.getThreadCount());
+        context.thread_type(options.getThreadType().getCode());
+        context.skip_loop_filter(options.getSkipLoopFilter().getCode());
+        context.skip_frame(options.getSkipFrame().getCode());
+        pixelFormat = options.getPixelFormat();
+        int ret = avcodec_open2(context, decoder, (AVDictionary) null);
+        if (ret < 0) {
+            throw new DecoderException("打开解码器失败: " + errorString(ret));
+        }
+        info = new DecoderInfo(name, context.thread_count(), ThreadType.ofCode(context.active_thread_type()),
+                (context.flags() & AV_CODEC_FLAG_LOW_DELAY) != 0,
+                DiscardLevel.ofCode(context.skip_loop_filter()), DiscardLevel.ofCode(context.skip_frame()), pixelFormat);
+        avPacket = av_packet_alloc();
+        avFrame = av_frame_alloc();
+        if (avPacket == null || avFrame == null) {
+            throw new DecoderException("分配 AVPacket/AVFrame 失败");
+        }
+    }
+
+    /**
+     * scrcpy 编码格式对应的 libavcodec AVCodecID
+     */
+    public static int toCodecId(Codec codec) {
+        return switch (codec) {
+            case H264 -> AV_CODEC_ID_H264;
+            case H265 -> AV_CODEC_ID_HEVC;
+            case AV1 -> AV_CODEC_ID_AV1;
+        };
+    }
+
+    /**
+     * 查找解码器。AV1 优先使用 libdav1d/libaom 软件解码器，
+     * ffmpeg 内置的 av1 解码器只能配合硬件加速使用
+     */
+    static AVCodec findDecoder(Codec codec) {
+        if (codec == Codec.AV1) {
+            for (String name : new String[]{"libdav1d", "libaom-av1"}) {
+                AVCodec decoder = avcodec_find_decoder_by_name(name);
+                if (decoder != null) {
+                    return decoder;
+                }
+            }
+        }
+        return avcodec_find_decoder(toCodecId(codec));
+    }
+
+    /**
+     * 送入一个视频包。配置包会被缓存下来，拼接到下一个包的前面一起送入解码器。
+     *
+     * <p>包数据拷贝一次到 {@code av_new_packet} 分配的带引用计数的缓冲区(末尾带0填充)，
+     * 解码器直接引用这块内存，不会再拷贝；解复用器的缓冲区在下一个包时会被复用，不能交给解码器引用。
+     * 解码器返回 EAGAIN 时包会保留下来，在 {@link #receive()}/{@link #discard()} 取出帧之后重新送入
+     */
+    @Override
+    public void submit(VideoPacket packet) {
+        ByteBuffer data = packet.data();
+        if (packet.isConfig()) {
+            config = new byte[data.remaining()];
+            data.duplicate().get(config);
+            return;
+        }
+        if (packetPending) {
+            sendPacket();
+            if (packetPending) {
+                throw new DecoderException("上一个视频包还没有送入解码器，需要先调用 receive() 取出解码结果");
+            }
+        }
+        int size = config.length + data.remaining();
+        int ret = av_new_packet(avPacket, size);
+        if (ret < 0) {
+            throw new DecoderException("分配包缓冲区失败: " + errorString(ret));
+        }
+        ByteBuffer buffer = avPacket.data().capacity(size).asBuffer();
+        buffer.put(config);
+        buffer.put(data.duplicate());
+        config = NO_CONFIG;
+        avPacket.pts(packet.pts() == VideoPacket.NO_PTS ? AV_NOPTS_VALUE : packet.pts());
+        avPacket.dts(avPacket.pts());
+        avPacket.flags(packet.isKeyFrame() ? AV_PKT_FLAG_KEY : 0);
+        sendPacket();
+    }
+
+    private void sendPacket() {
+        int ret = avcodec_send_packet(context, avPacket);
+        if (ret == AVERROR_EAGAIN()) {
+            // 解码器的输出还没有取完
+            packetPending = true;
+            return;
+        }
+        packetPending = false;
+        av_packet_unref(avPacket);
+        if (ret < 0) {
+            throw new DecoderException("送入视频包失败: " + errorString(ret));
+        }
+    }
+
+    /**
+     * avcodec_receive_frame，没有输出但还有未送入的包时送入后再取一次
+     */
+    private int receiveFrame() {
+        int ret = avcodec_receive_frame(context, avFrame);
+        if (ret == AVERROR_EAGAIN() && packetPending) {
+            sendPacket();
+            if (!packetPending) {
+                ret = avcodec_receive_frame(context, avFrame);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * 取出一帧解码结果
+     *
+     * @return 解码后的帧，暂时没有可输出的帧时返回 null
+     */
+    @Override
+    public Frame receive() {
+        int ret = receiveFrame();
+        if (ret == AVERROR_EAGAIN() || ret == AVERROR_EOF) {
+            return null;
+        }
+        if (ret < 0) {
+            throw new DecoderException("解码失败: " + errorString(ret));
+        }
+        int width = avFrame.width();
+        int height = avFrame.height();
+        // av_frame_unref 会把这些字段重置为默认值，必须先读出来
+        long timestamp = avFrame.best_effort_timestamp();
+        boolean keyFrame = avFrame.key_frame() != 0;
+        if (pixelFormat == PixelFormat.NATIVE && isYuv420p(avFrame.format())) {
+            // 直接引用解码器的平面，不拷贝。avcodec_receive_frame 下一次调用时才会释放
+            wrapNative(width, height);
+        } else {
+            convert(width, height);
+            av_frame_unref(avFrame);
+        }
+        frame.timestamp = timestamp;
+        frame.keyFrame = keyFrame;
+        return frame;
+    }
+
+    private void convert(int width, int height) {
+        ensureFrame(width, height);
+        int dstFormat = pixelFormat.isPlanar() ? AV_PIX_FMT_YUV420P : pixelFormat.getCode();
+        swsContext = sws_getCachedContext(swsContext, width, height, avFrame.format(),
+                width, height, dstFormat, SWS_BILINEAR, null, null, (DoublePointer) null);
+        if (swsContext == null) {
+            throw new DecoderException("创建像素格式转换上下文失败");
+        }
+        sws_scale(swsContext, avFrame.data(), avFrame.linesize(), 0, height, frameData, frameLinesize);
+    }
+
+    private static boolean isYuv420p(int format) {
+        return format == AV_PIX_FMT_YUV420P || format == AV_PIX_FMT_YUVJ420P;
+    }
+
+    private void wrapNative(int width, int height) {
+        if (nativeFrame == null) {
+            nativeFrame = new Frame();
+            nativeFrame.imageDepth = Frame.DEPTH_UBYTE;
+            nativeFrame.imageChannels = 1;
+            nativeFrame.image = new Buffer[3];
+        }
+        int chromaHeight = (height + 1) / 2;
+        for (int i = 0; i < 3; i++) {
+            long capacity = (long) avFrame.linesize(i) * (i == 0 ? height : chromaHeight);
+            nativeFrame.image[i] = avFrame.data(i).capacity(capacity).asBuffer();
+        }
+        nativeFrame.imageWidth = width;
+        nativeFrame.imageHeight = height;
+        nativeFrame.imageStride = avFrame.linesize(0);
+        frame = nativeFrame;
+    }
+
+    @Override
+    public void flush() {
+        if (packetPending) {
+            av_packet_unref(avPacket);
+            packetPending = false;
+        }
+        avcodec_flush_buffers(context);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public DecoderInfo getInfo() {
+        return info;
+    }
+
+    @Override
+    public boolean discard() {
+        int ret = receiveFrame();
+        if (ret == AVERROR_EAGAIN() || ret == AVERROR_EOF) {
+            return false;
+        }
+        if (ret < 0) {
+            throw new DecoderException("解码失败: " + errorString(ret));
+        }
+        av_frame_unref(avFrame);
+        return true;
+    }
+
+    private void ensureFrame(int width, int height) {
+        if (convertedFrame != null && convertedFrame.imageWidth == width && convertedFrame.imageHeight == height) {
+            frame = convertedFrame;
+            return;
+        }
+        if (convertedFrame != null) {
+            convertedFrame.close();
+        }
+        if (pixelFormat.isPlanar()) {
+            convertedFrame = FrameUtil.allocateYuv420p(width, height);
+            frameData = new PointerPointer<>(3);
+            frameLinesize = new IntPointer(3);
+            for (int i = 0; i < 3; i++) {
+                frameData.put(i, new BytePointer((ByteBuffer) convertedFrame.image[i]));
+                frameLinesize.put(i, FrameUtil.planeStride(convertedFrame, i));
+            }
+        } else {
+            convertedFrame = new Frame(width, height, Frame.DEPTH_UBYTE, pixelFormat.getChannels());
+            frameData = new PointerPointer<>(1).put(0, new BytePointer((ByteBuffer) convertedFrame.image[0]));
+            frameLinesize = new IntPointer(1).put(0, convertedFrame.imageStride);
+        }
+        frame = convertedFrame;
+    }
+
+    public static String errorString(int err) {
+        try (BytePointer buf = new BytePointer(256)) {
+            av_strerror(err, buf, 256);
+            return buf.getString() + "(" + err + ")";
+        }
+    }
+
+    @Override
+    public void close() {
+        // av_packet_free 同时释放未送入的包
+        if (avPacket != null) {
+            av_packet_free(avPacket);
+            avPacket = null;
+        }
+        if (avFrame != null) {
+            av_frame_free(avFrame);
+            avFrame = null;
+        }
+        if (context != null) {
+            avcodec_free_context(context);
+            context = null;
+        }
+        if (swsContext != null) {
+            sws_freeContext(swsContext);
+            swsContext = null;
+        }
+        if (convertedFrame != null) {
+            convertedFrame.close();
+            convertedFrame = null;
+        }
+        frame = null;
+        nativeFrame = null;
+    }
+}
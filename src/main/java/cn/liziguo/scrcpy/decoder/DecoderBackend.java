@@ -0,0 +1,30 @@
+package cn.liziguo.scrcpy.decoder;
+
+import java.util.function.Supplier;
+
+/**
+ * 内置的解码器实现
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public enum DecoderBackend implements Supplier<VideoDecoder> {
+    /**
+     * 直接调用 libavcodec 的 avcodec_send_packet/avcodec_receive_frame(默认)
+     */
+    AVCODEC {
+        @Override
+        public VideoDecoder get() {
+            return new AvcodecDecoder();
+        }
+    },
+    /**
+     * 把视频包拼接成裸码流交给 FFmpegFrameGrabber 解码，延迟更高，仅作为备用
+     */
+    GRABBER {
+        @Override
+        public VideoDecoder get() {
+            return new GrabberDecoder();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package cn.liziguo.scrcpy.decoder;
+
+/**
+ * 解码器打开之后实际生效的参数。解码器可能会调整请求的参数，例如线程数为0时由解码器自动决定，
+ * 或者当前编码不支持帧级多线程时回退为片级多线程
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class DecoderInfo {
+
+    private final String name;
+    private final int threadCount;
+    private final ThreadType threadType;
+    private final boolean lowDelay;
+    private final DiscardLevel skipLoopFilter;
+    private final DiscardLevel skipFrame;
+    private final PixelFormat pixelFormat;
+
+    public DecoderInfo(String name, int threadCount, ThreadType threadType, boolean lowDelay,
+                       DiscardLevel skipLoopFilter, DiscardLevel skipFrame, PixelFormat pixelFormat) {
+        this.name = name;
+        this.threadCount = threadCount;
+        this.threadType = threadType;
+        this.lowDelay = lowDelay;
+        this.skipLoopFilter = skipLoopFilter;
+        this.skipFrame = skipFrame;
+        this.pixelFormat = pixelFormat;
+    }
+
+    /**
+     * 解码器名称，格式为 后端:解码器，例如 avcodec:h264
+     */
+    public String getName() {
+        return name;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * 实际使用的多线程方式，单线程时为 null
+     */
+    public ThreadType getThreadType() {
+        return threadType;
+    }
+
+    public boolean isLowDelay() {
+        return lowDelay;
+    }
+
+    public DiscardLevel getSkipLoopFilter() {
+        return skipLoopFilter;
+    }
+
+    public DiscardLevel getSkipFrame() {
+        return skipFrame;
+    }
+
+    public PixelFormat getPixelFormat() {
+        return pixelFormat;
+    }
+
+    @Override
+    public String toString() {
+        return "DecoderInfo{" +
+                "name='" + name + '\'' +
+                ", threadCount=" + threadCount +
+                ", threadType=" + threadType +
+                ", lowDelay=" + lowDelay +
+                ", skipLoopFilter=" + skipLoopFilter +
+                ", skipFrame=" + skipFrame +
+                ", pixelFormat=" + pixelFormat +
+                '}';
+    }
+}
@@ -0,0 +1,103 @@
+package cn.liziguo.scrcpy.decoder;
+
+import java.util.Objects;
+
+/**
+ * 解码器参数。默认值偏向单设备最低延迟：单线程、低延迟模式、不跳过任何数据、输出BGR24。
+ *
+ * <p>同一台主机同时解码很多台设备时，可以通过跳过环路滤波等方式用画质换取整体吞吐量；
+ * 单台高分辨率设备则可以开启多线程解码。解码器实际生效的参数见 {@link DecoderInfo}。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class DecoderOptions {
+
+    /**
+     * 解码线程数，0 表示由解码器根据CPU核数自动决定
+     */
+    private int threadCount = 1;
+    /**
+     * 多线程方式
+     */
+    private ThreadType threadType = ThreadType.SLICE;
+    /**
+     * 低延迟模式：AV_CODEC_FLAG_LOW_DELAY
+     */
+    private boolean lowDelay = true;
+    /**
+     * 跳过环路滤波(去块滤波)的级别，跳过后解码更快但画面会有块效应
+     */
+    private DiscardLevel skipLoopFilter = DiscardLevel.DEFAULT;
+    /**
+     * 跳过解码的帧级别
+     */
+    private DiscardLevel skipFrame = DiscardLevel.DEFAULT;
+    /**
+     * 输出像素格式
+     */
+    private PixelFormat pixelFormat = PixelFormat.BGR24;
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 0) {
+            throw new IllegalArgumentException("threadCount must not be negative");
+        }
+        this.threadCount = threadCount;
+    }
+
+    public ThreadType getThreadType() {
+        return threadType;
+    }
+
+    public void setThreadType(ThreadType threadType) {
+        this.threadType = Objects.requireNonNull(threadType, "threadType must not be null");
+    }
+
+    public boolean isLowDelay() {
+        return lowDelay;
+    }
+
+    public void setLowDelay(boolean lowDelay) {
+        this.lowDelay = lowDelay;
+    }
+
+    public DiscardLevel getSkipLoopFilter() {
+        return skipLoopFilter;
+    }
+
+    public void setSkipLoopFilter(DiscardLevel skipLoopFilter) {
+        this.skipLoopFilter = Objects.requireNonNull(skipLoopFilter, "skipLoopFilter must not be null");
+    }
+
+    public DiscardLevel getSkipFrame() {
+        return skipFrame;
+    }
+
+    public void setSkipFrame(DiscardLevel skipFrame) {
+        this.skipFrame = Objects.requireNonNull(skipFrame, "skipFrame must not be null");
+    }
+
+    public PixelFormat getPixelFormat() {
+        return pixelFormat;
+    }
+
+    public void setPixelFormat(PixelFormat pixelFormat) {
+        this.pixelFormat = Objects.requireNonNull(pixelFormat, "pixelFormat must not be null");
+    }
+
+    @Override
+    public String toString() {
+        return "DecoderOptions{" +
+                "threadCount=" + threadCount +
+                ", threadType=" + threadType +
+                ", lowDelay=" + lowDelay +
+                ", skipLoopFilter=" + skipLoopFilter +
+                ", skipFrame=" + skipFrame +
+                ", pixelFormat=" + pixelFormat +
+                '}';
+    }
+}
@@ -0,0 +1,65 @@
+package cn.liziguo.scrcpy.decoder;
+
+import static org.bytedeco.ffmpeg.global.avcodec.*;
+
+/**
+ * 解码器跳过(丢弃)级别，对应 libavcodec 的 AVDISCARD_*，用于 skip_loop_filter 和 skip_frame
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public enum DiscardLevel {
+    /**
+     * 不跳过
+     */
+    NONE(AVDISCARD_NONE, "none"),
+    /**
+     * 只跳过无用的数据(例如长度为0的包)
+     */
+    DEFAULT(AVDISCARD_DEFAULT, "default"),
+    /**
+     * 跳过所有非参考帧
+     */
+    NONREF(AVDISCARD_NONREF, "noref"),
+    /**
+     * 跳过所有双向预测帧
+     */
+    BIDIR(AVDISCARD_BIDIR, "bidir"),
+    /**
+     * 跳过所有非帧内编码帧
+     */
+    NONINTRA(AVDISCARD_NONINTRA, "nointra"),
+    /**
+     * 跳过所有非关键帧
+     */
+    NONKEY(AVDISCARD_NONKEY, "nokey"),
+    /**
+     * 全部跳过
+     */
+    ALL(AVDISCARD_ALL, "all");
+
+    private final int code;
+    private final String optionName;
+
+    DiscardLevel(int code, String optionName) {
+        this.code = code;
+        this.optionName = optionName;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getOptionName() {
+        return optionName;
+    }
+
+    static DiscardLevel ofCode(int code) {
+        for (DiscardLevel level : values()) {
+            if (level.code == code) {
+                return level;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,110 @@
+package cn.liziguo.scrcpy.decoder;
+
+import cn.liziguo.scrcpy.exception.DecoderException;
+import cn.liziguo.scrcpy.frame.FrameUtil;
+import org.bytedeco.ffmpeg.swscale.SwsContext;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.javacv.Frame;
+
+import java.io.Closeable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import static org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_YUV420P;
+import static org.bytedeco.ffmpeg.global.swscale.*;
+
+/**
+ * 用 libswscale 缩放解码后的帧，像素格式保持不变。输出帧由缩放器持有，在下一次 {@link #scale} 之前有效。
+ * 非线程安全。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class FrameScaler implements Closeable {
+
+    private SwsContext swsContext;
+    private final PointerPointer<?> srcData = new PointerPointer<>(3);
+    private final IntPointer srcLinesize = new IntPointer(3);
+    /**
+     * 上一次源帧的缓冲区，缓冲区不变时复用指针
+     */
+    private final Buffer[] srcBuffers = new Buffer[3];
+    private Frame dst;
+    private PointerPointer<?> dstData;
+    private IntPointer dstLinesize;
+
+    /**
+     * 按比例缩放，使长边不超过 maxSize，宽高取偶数。源帧本身不超过 maxSize 时原样返回
+     */
+    public Frame scale(Frame src, PixelFormat format, int maxSize) {
+        int width = src.imageWidth;
+        int height = src.imageHeight;
+        int longSide = Math.max(width, height);
+        if (longSide <= maxSize) {
+            return src;
+        }
+        int dstWidth = Math.max(2, (int) ((long) width * maxSize / longSide) & ~1);
+        int dstHeight = Math.max(2, (int) ((long) height * maxSize / longSide) & ~1);
+        return scale(src, format, dstWidth, dstHeight);
+    }
+
+    public Frame scale(Frame src, PixelFormat format, int width, int height) {
+        int avFormat = format.isPlanar() ? AV_PIX_FMT_YUV420P : format.getCode();
+        ensureDst(format, width, height);
+        swsContext = sws_getCachedContext(swsContext, src.imageWidth, src.imageHeight, avFormat,
+                width, height, avFormat, SWS_AREA, null, null, (DoublePointer) null);
+        if (swsContext == null) {
+            throw new DecoderException("创建缩放上下文失败");
+        }
+        for (int i = 0; i < src.image.length && i < 3; i++) {
+            if (srcBuffers[i] != src.image[i]) {
+                srcBuffers[i] = src.image[i];
+                srcData.put(i, new BytePointer((ByteBuffer) src.image[i]).position(0));
+            }
+            srcLinesize.put(i, format.isPlanar() ? FrameUtil.planeStride(src, i) : src.imageStride);
+        }
+        sws_scale(swsContext, srcData, srcLinesize, 0, src.imageHeight, dstData, dstLinesize);
+        dst.timestamp = src.timestamp;
+        dst.keyFrame = src.keyFrame;
+        return dst;
+    }
+
+    private void ensureDst(PixelFormat format, int width, int height) {
+        boolean planar = format.isPlanar();
+        if (dst != null && dst.imageWidth == width && dst.imageHeight == height
+                && dst.image.length == (planar ? 3 : 1) && dst.imageChannels == format.getChannels()) {
+            return;
+        }
+        if (dst != null) {
+            dst.close();
+        }
+        if (planar) {
+            dst = FrameUtil.allocateYuv420p(width, height);
+            dstData = new PointerPointer<>(3);
+            dstLinesize = new IntPointer(3);
+            for (int i = 0; i < 3; i++) {
+                dstData.put(i, new BytePointer((ByteBuffer) dst.image[i]));
+                dstLinesize.put(i, FrameUtil.planeStride(dst, i));
+            }
+        } else {
+            dst = new Frame(width, height, Frame.DEPTH_UBYTE, format.getChannels());
+            dstData = new PointerPointer<>(1).put(0, new BytePointer((ByteBuffer) dst.image[0]));
+            dstLinesize = new IntPointer(1).put(0, dst.imageStride);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (swsContext != null) {
+            sws_freeContext(swsContext);
+            swsContext = null;
+        }
+        if (dst != null) {
+            dst.close();
+            dst = null;
+        }
+    }
+}
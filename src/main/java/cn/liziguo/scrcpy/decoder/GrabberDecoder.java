@@ -0,0 +1,244 @@
+package cn.liziguo.scrcpy.decoder;
+
+import cn.liziguo.scrcpy.constant.Codec;
+import cn.liziguo.scrcpy.constant.PoolExhaustedPolicy;
+import cn.liziguo.scrcpy.exception.DecoderException;
+import cn.liziguo.scrcpy.frame.FramePool;
+import cn.liziguo.scrcpy.frame.PooledFrame;
+import cn.liziguo.scrcpy.stream.VideoPacket;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 {@link FFmpegFrameGrabber} 的备用解码器：把视频包按顺序拼接成裸码流，由独立线程中的 grabber 读取并解码。
+ *
+ * <p>grabber 需要先探测码流格式，首帧延迟和单帧延迟都比 {@link AvcodecDecoder} 高，
+ * 主要用于排查问题以及和 {@link AvcodecDecoder} 做性能对比。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class GrabberDecoder implements VideoDecoder {
+
+    private static final byte[] END_OF_STREAM = new byte[0];
+    /**
+     * 输入队列满时每次等待的时间，超时后检查 grabber 线程是否还在运行
+     */
+    private static final long SUBMIT_POLL_MILLIS = 100;
+
+    private final BlockingQueue<byte[]> input = new ArrayBlockingQueue<>(64);
+    /**
+     * 解码结果：grabber 会复用自己的帧，因此拷贝到帧池中再交给解码线程
+     */
+    private final FramePool output = new FramePool(3, PoolExhaustedPolicy.BLOCK);
+    private final BlockingQueue<PooledFrame> frames = new ArrayBlockingQueue<>(3);
+    private PooledFrame current;
+    private Thread thread;
+    private String format;
+    private DecoderOptions options;
+    private DecoderInfo info;
+    private volatile boolean closed;
+    private volatile Exception failure;
+
+    @Override
+    public void configure(Codec codec, int width, int height, DecoderOptions options) {
+        if (options.getPixelFormat().isPlanar()) {
+            throw new DecoderException("GrabberDecoder 不支持平面像素格式: " + options.getPixelFormat());
+        }
+        this.format = toFormat(codec);
+        this.options = options;
+        // grabber 无法读回解码器上下文，这里只能报告请求的参数
+        this.info = new DecoderInfo(getName(), options.getThreadCount(),
+                options.getThreadCount() == 1 ? null : options.getThreadType(), options.isLowDelay(),
+                options.getSkipLoopFilter(), options.getSkipFrame(), options.getPixelFormat());
+        thread = Thread.ofPlatform().name("scrcpy-grabber-decoder").daemon(true).start(this::grabLoop);
+    }
+
+    /**
+     * 各编码对应的 libavformat 裸码流格式，AV1 为 Low Overhead Bitstream Format(obu)
+     */
+    static String toFormat(Codec codec) {
+        return switch (codec) {
+            case H264 -> "h264";
+            case H265 -> "hevc";
+            case AV1 -> "obu";
+        };
+    }
+
+    private void grabLoop() {
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(new PacketInputStream(), 0)) {
+            grabber.setFormat(format);
+
+            // 核心低延迟参数
+            if (options.isLowDelay()) {
+                grabber.setOption("flags", "low_delay");   // 全局低延迟模式
+            }
+            grabber.setOption("analyzeduration", "10");    // 减少流分析时间(ms)
+            grabber.setOption("probesize", "32");          // 最小化探测数据量
+            grabber.setOption("avioflags", "direct");      // 减少缓冲
+
+            grabber.setVideoOption("threads", String.valueOf(options.getThreadCount()));
+            grabber.setVideoOption("thread_type", options.getThreadType().getOptionName());
+            grabber.setVideoOption("skip_loop_filter", options.getSkipLoopFilter().getOptionName());
+            grabber.setVideoOption("skip_frame", options.getSkipFrame().getOptionName());
+            grabber.setPixelFormat(options.getPixelFormat().getCode());
+
+            grabber.start();
+            while (!closed) {
+                Frame frame = grabber.grabFrame(false, true, true, false, true);
+                if (frame == null) {
+                    break;
+                }
+                if (frame.image == null) {
+                    continue;
+                }
+                PooledFrame pooledFrame = output.acquire(frame);
+                if (pooledFrame == null) {
+                    break;
+                }
+                frames.put(pooledFrame);
+            }
+        } catch (Exception e) {
+            if (!closed) {
+                failure = e;
+            }
+        }
+        // grabFrame 在 av_read_frame 出错时只返回null，没有异常也要让解码线程知道 grabber 已经停止
+        if (!closed && failure == null) {
+            failure = new DecoderException("FFmpegFrameGrabber 读取码流失败，解码线程已退出");
+        }
+    }
+
+    @Override
+    public void submit(VideoPacket packet) {
+        checkFailure();
+        byte[] bytes = new byte[packet.size()];
+        packet.data().get(bytes);
+        try {
+            // grabber 线程退出后不会再读取输入，不能无限等待
+            while (!input.offer(bytes, SUBMIT_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+                if (closed || !thread.isAlive()) {
+                    throw new DecoderException("FFmpegFrameGrabber 解码线程已退出");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DecoderException(e);
+        }
+    }
+
+    @Override
+    public Frame receive() {
+        checkFailure();
+        if (current != null) {
+            current.release();
+        }
+        current = frames.poll();
+        return current == null ? null : current.frame();
+    }
+
+    /**
+     * grabber 在自己的线程中已经完成了转换，这里只是不把帧交给调用方
+     */
+    @Override
+    public boolean discard() {
+        return receive() != null;
+    }
+
+    private void checkFailure() {
+        Exception e = failure;
+        if (e != null) {
+            throw new DecoderException("FFmpegFrameGrabber 解码失败", e);
+        }
+    }
+
+    /**
+     * 只能丢弃尚未被 grabber 读取的视频包，grabber 内部已经缓存的数据无法清除
+     */
+    @Override
+    public void flush() {
+        input.clear();
+    }
+
+    @Override
+    public String getName() {
+        return "grabber:" + format;
+    }
+
+    @Override
+    public DecoderInfo getInfo() {
+        return info;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        input.clear();
+        input.offer(END_OF_STREAM);
+        output.close();
+        if (current != null) {
+            current.release();
+            current = null;
+        }
+        PooledFrame frame;
+        while ((frame = frames.poll()) != null) {
+            frame.release();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 把视频包队列当作连续的字节流读取
+     */
+    private class PacketInputStream extends InputStream {
+
+        private byte[] packet = new byte[0];
+        private int offset;
+
+        private boolean next() throws InterruptedException {
+            while (offset >= packet.length) {
+                if (packet == END_OF_STREAM) {
+                    return false;
+                }
+                packet = input.take();
+                offset = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() {
+            try {
+                return next() ? packet[offset++] & 0xFF : -1;
+            } catch (InterruptedException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                if (!next()) {
+                    return -1;
+                }
+            } catch (InterruptedException e) {
+                return -1;
+            }
+            int n = Math.min(len, packet.length - offset);
+            System.arraycopy(packet, offset, b, off, n);
+            offset += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package cn.liziguo.scrcpy.decoder;
+
+import static org.bytedeco.ffmpeg.global.avutil.*;
+
+/**
+ * 解码器输出的像素格式
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public enum PixelFormat {
+    /**
+     * 与 {@code FFmpegFrameGrabber} 默认输出一致，{@code Java2DFrameConverter}/OpenCV 可以直接使用
+     */
+    BGR24(AV_PIX_FMT_BGR24, 3),
+    RGB24(AV_PIX_FMT_RGB24, 3),
+    BGRA(AV_PIX_FMT_BGRA, 4),
+    RGBA(AV_PIX_FMT_RGBA, 4),
+    /**
+     * 灰度图，从YUV转换时只需要取Y平面，比BGR24省去大部分转换开销
+     */
+    GRAY8(AV_PIX_FMT_GRAY8, 1),
+    /**
+     * YUV420P平面格式：{@code frame.image} 依次为 Y、U、V 三个平面，各平面行跨度见 {@link cn.liziguo.scrcpy.frame.FrameUtil#planeStride}。
+     * 适合重新编码、计算哈希等场景
+     */
+    YUV420P(AV_PIX_FMT_YUV420P, 1, true),
+    /**
+     * 解码器原生平面：与 YUV420P 的布局相同，但直接引用解码器内部的缓冲区，不做任何转换和拷贝，
+     * 只在下一帧解码之前有效(交给帧池/信箱等消费者时会自动拷贝)。
+     * {@code frame.image[0]} 本身就是一幅可以直接使用的灰度图。
+     * 解码器输出不是8位YUV420时退化为 YUV420P 转换
+     */
+    NATIVE(AV_PIX_FMT_YUV420P, 1, true);
+
+    private final int code;
+    /**
+     * 每个像素的字节数，平面格式为第一个平面每个像素的字节数
+     */
+    private final int channels;
+    /**
+     * 是否是平面格式(每个平面一个缓冲区)
+     */
+    private final boolean planar;
+
+    PixelFormat(int code, int channels) {
+        this(code, channels, false);
+    }
+
+    PixelFormat(int code, int channels, boolean planar) {
+        this.code = code;
+        this.channels = channels;
+        this.planar = planar;
+    }
+
+    /**
+     * libavutil 中的 AV_PIX_FMT_*
+     */
+    public int getCode() {
+        return code;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public boolean isPlanar() {
+        return planar;
+    }
+}
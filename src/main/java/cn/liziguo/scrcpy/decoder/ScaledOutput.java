@@ -0,0 +1,78 @@
+package cn.liziguo.scrcpy.decoder;
+
+import cn.liziguo.scrcpy.frame.FramePublisher;
+import org.bytedeco.javacv.Frame;
+
+import java.io.Closeable;
+
+/**
+ * 同一路解码结果的一个缩小分辨率的输出，通过 {@link cn.liziguo.scrcpy.ScrcpyClient#addScaledOutput(int)} 创建。
+ *
+ * <p>缩放在解码线程中紧接着解码进行，只有 {@link #getPublisher()} 有订阅者时才会计算，
+ * 不需要为缩略图再开一个 scrcpy 会话，也不需要在Java中拷贝原图再缩放。
+ *
+ * <p>{@link #close()} 可以在任意线程调用：缩放和释放原生缩放上下文使用同一把锁，不会在解码线程缩放时释放内存。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class ScaledOutput implements Closeable {
+
+    private final int maxSize;
+    private final FramePublisher publisher = new FramePublisher();
+    private final FrameScaler scaler = new FrameScaler();
+    private volatile boolean closed;
+
+    public ScaledOutput(int maxSize) {
+        if (maxSize < 2) {
+            throw new IllegalArgumentException("maxSize must be at least 2");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 由解码线程调用
+     *
+     * @param frame  解码器输出的帧
+     * @param format frame 的像素格式
+     */
+    public void process(Frame frame, PixelFormat format) throws InterruptedException {
+        if (closed || !publisher.hasSubscribers()) {
+            return;
+        }
+        synchronized (scaler) {
+            if (closed) {
+                return;
+            }
+            publisher.publish(scaler.scale(frame, format, maxSize));
+        }
+    }
+
+    /**
+     * 长边的最大像素数
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 缩放后帧的发布器
+     */
+    public FramePublisher getPublisher() {
+        return publisher;
+    }
+
+    public boolean hasSubscribers() {
+        return publisher.hasSubscribers();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // 先在锁外关闭发布器，唤醒可能在 publish 中等待 LOSSLESS_BOUNDED 订阅者的解码线程
+        publisher.close();
+        synchronized (scaler) {
+            scaler.close();
+        }
+    }
+}
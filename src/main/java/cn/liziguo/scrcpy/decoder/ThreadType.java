@@ -0,0 +1,43 @@
+package cn.liziguo.scrcpy.decoder;
+
+/**
+ * 解码器多线程方式，code 为 libavcodec 中的 FF_THREAD_FRAME(1)、FF_THREAD_SLICE(2)，javacpp 的绑定没有导出这两个宏
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public enum ThreadType {
+    /**
+     * 帧级多线程：吞吐量高，但每多一个线程就多一帧延迟
+     */
+    FRAME(1, "frame"),
+    /**
+     * 片级多线程：不增加延迟，加速效果取决于编码器输出的slice数量
+     */
+    SLICE(2, "slice");
+
+    private final int code;
+    private final String optionName;
+
+    ThreadType(int code, String optionName) {
+        this.code = code;
+        this.optionName = optionName;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getOptionName() {
+        return optionName;
+    }
+
+    static ThreadType ofCode(int code) {
+        for (ThreadType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
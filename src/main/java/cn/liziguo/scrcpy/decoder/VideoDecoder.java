@@ -0,0 +1,67 @@
+package cn.liziguo.scrcpy.decoder;
+
+import cn.liziguo.scrcpy.constant.Codec;
+import cn.liziguo.scrcpy.stream.VideoPacket;
+import org.bytedeco.javacv.Frame;
+
+import java.io.Closeable;
+
+/**
+ * 视频解码器SPI：由 {@link cn.liziguo.scrcpy.ScrcpyClient} 在解码线程中按
+ * {@link #configure} -> ({@link #submit} -> {@link #receive}...)... -> {@link #close} 的顺序调用。
+ *
+ * <p>实现类不需要线程安全。{@link #receive()} 返回的帧归解码器所有，在下一次 {@link #receive()} 之前有效。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ * @see DecoderBackend
+ */
+public interface VideoDecoder extends Closeable {
+
+    /**
+     * 配置并打开解码器
+     *
+     * @param codec   视频编码
+     * @param width   初始宽度(来自 codec meta，实际宽高以解码结果为准)
+     * @param height  初始高度
+     * @param options 解码器参数
+     */
+    void configure(Codec codec, int width, int height, DecoderOptions options);
+
+    /**
+     * 送入一个视频包，配置包也会送入。调用返回后 packet 的数据会被复用
+     */
+    void submit(VideoPacket packet);
+
+    /**
+     * 取出一帧解码结果，不阻塞
+     *
+     * @return 解码后的帧，暂时没有可输出的帧时返回 null
+     */
+    Frame receive();
+
+    /**
+     * 取出一帧解码结果并直接丢弃，不做像素格式转换，不阻塞
+     *
+     * @return 是否取出了一帧
+     */
+    boolean discard();
+
+    /**
+     * 丢弃解码器内部缓存的所有数据(例如跳过了部分视频包之后)，保留配置，之后需要从关键帧开始送入
+     */
+    void flush();
+
+    /**
+     * 解码器名称，用于日志和性能对比
+     */
+    String getName();
+
+    /**
+     * 解码器实际生效的参数，{@link #configure} 之后可用
+     */
+    DecoderInfo getInfo();
+
+    @Override
+    void close();
+}
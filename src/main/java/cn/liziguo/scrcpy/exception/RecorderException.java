@@ -0,0 +1,26 @@
+package cn.liziguo.scrcpy.exception;
+
+/**
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class RecorderException extends RuntimeException {
+    public RecorderException() {
+    }
+
+    public RecorderException(String message) {
+        super(message);
+    }
+
+    public RecorderException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public RecorderException(Throwable cause) {
+        super(cause);
+    }
+
+    public RecorderException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
@@ -0,0 +1,155 @@
+package cn.liziguo.scrcpy.frame;
+
+import org.bytedeco.javacv.Frame;
+
+import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.image.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Frame 到 BufferedImage 的转换，用于代替每次重绘都调用 {@code Java2DFrameConverter.getBufferedImage}。
+ *
+ * <ul>
+ *   <li>{@link #wrap(Frame)}：用自定义 DataBuffer 直接包装帧的堆外内存，不拷贝像素。包装对象按缓冲区缓存，
+ *   帧池中的帧只在第一次出现时创建。绘制时逐像素读取，适合偶尔读取像素，不适合频繁绘制</li>
+ *   <li>{@link #convert(Frame, BufferedImage)}：拷贝一次到调用方提供的 TYPE_3BYTE_BGR/TYPE_BYTE_GRAY 图像中，绘制走 Java2D 的快速路径</li>
+ *   <li>{@link #convert(PooledFrame)}：记录已经转换过的帧序号，同一帧重复调用直接返回上次的结果。
+ *   内部两张图像交替使用，返回的图像在下一次转换期间保持不变，可以在后台线程转换、在EDT中绘制</li>
+ * </ul>
+ *
+ * <p>只支持 BGR24(默认输出格式)和 GRAY8，其他格式抛出 IllegalArgumentException。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class BufferedImageConverter {
+
+    private static final int WRAPPER_CACHE_SIZE = 8;
+
+    private final BufferedImage[] images = new BufferedImage[2];
+    private int current;
+    private volatile long convertedSequence = -1;
+    private final Buffer[] wrappedBuffers = new Buffer[WRAPPER_CACHE_SIZE];
+    private final BufferedImage[] wrappers = new BufferedImage[WRAPPER_CACHE_SIZE];
+    private int nextWrapper;
+
+    /**
+     * 转换帧池中的帧，序号与上次相同时不做任何拷贝
+     */
+    public BufferedImage convert(PooledFrame pooledFrame) {
+        return convert(pooledFrame.frame(), pooledFrame.sequence());
+    }
+
+    /**
+     * 转换帧，序号与上次相同时不做任何拷贝
+     *
+     * @param sequence 帧序号，调用方保证不同帧的序号不同
+     */
+    public synchronized BufferedImage convert(Frame frame, long sequence) {
+        BufferedImage image = images[current];
+        if (sequence == convertedSequence && image != null) {
+            return image;
+        }
+        int back = current ^ 1;
+        images[back] = convert(frame, images[back]);
+        current = back;
+        convertedSequence = sequence;
+        return images[back];
+    }
+
+    /**
+     * 上一次转换的帧序号，没有转换过时为-1
+     */
+    public long getConvertedSequence() {
+        return convertedSequence;
+    }
+
+    /**
+     * 拷贝到 target 中，target 为 null 或尺寸、类型不匹配时新建一张
+     *
+     * @return 写入了像素的图像
+     */
+    public static BufferedImage convert(Frame frame, BufferedImage target) {
+        int type = imageType(frame);
+        int width = frame.imageWidth;
+        int height = frame.imageHeight;
+        if (target == null || target.getType() != type || target.getWidth() != width || target.getHeight() != height) {
+            target = new BufferedImage(width, height, type);
+        }
+        byte[] data = ((DataBufferByte) target.getRaster().getDataBuffer()).getData();
+        int rowBytes = width * frame.imageChannels;
+        ByteBuffer src = (ByteBuffer) frame.image[0];
+        if (frame.imageStride == rowBytes) {
+            src.get(0, data, 0, rowBytes * height);
+        } else {
+            for (int y = 0; y < height; y++) {
+                src.get(y * frame.imageStride, data, y * rowBytes, rowBytes);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * 包装帧的缓冲区为 BufferedImage，不拷贝像素。图像与帧共用内存，只在帧有效期间可用
+     */
+    public synchronized BufferedImage wrap(Frame frame) {
+        int type = imageType(frame);
+        Buffer buffer = frame.image[0];
+        for (int i = 0; i < WRAPPER_CACHE_SIZE; i++) {
+            BufferedImage wrapper = wrappers[i];
+            if (wrappedBuffers[i] == buffer && wrapper.getWidth() == frame.imageWidth
+                    && wrapper.getHeight() == frame.imageHeight
+                    && wrapper.getRaster().getNumBands() == frame.imageChannels) {
+                return wrapper;
+            }
+        }
+        int channels = frame.imageChannels;
+        int[] bandOffsets = type == BufferedImage.TYPE_3BYTE_BGR ? new int[]{2, 1, 0} : new int[]{0};
+        SampleModel sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE,
+                frame.imageWidth, frame.imageHeight, channels, frame.imageStride, bandOffsets);
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, new ByteBufferDataBuffer((ByteBuffer) buffer), null);
+        ColorSpace colorSpace = ColorSpace.getInstance(channels == 1 ? ColorSpace.CS_GRAY : ColorSpace.CS_sRGB);
+        ColorModel colorModel = new ComponentColorModel(colorSpace, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        BufferedImage wrapper = new BufferedImage(colorModel, raster, false, null);
+        wrappedBuffers[nextWrapper] = buffer;
+        wrappers[nextWrapper] = wrapper;
+        nextWrapper = (nextWrapper + 1) % WRAPPER_CACHE_SIZE;
+        return wrapper;
+    }
+
+    private static int imageType(Frame frame) {
+        if (frame.image == null || frame.image.length != 1 || frame.imageDepth != Frame.DEPTH_UBYTE) {
+            throw new IllegalArgumentException("only packed 8-bit frames are supported");
+        }
+        return switch (frame.imageChannels) {
+            case 3 -> BufferedImage.TYPE_3BYTE_BGR;
+            case 1 -> BufferedImage.TYPE_BYTE_GRAY;
+            default -> throw new IllegalArgumentException("unsupported channels: " + frame.imageChannels);
+        };
+    }
+
+    /**
+     * 以堆外 ByteBuffer 为存储的 DataBuffer
+     */
+    private static final class ByteBufferDataBuffer extends DataBuffer {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferDataBuffer(ByteBuffer buffer) {
+            super(DataBuffer.TYPE_BYTE, buffer.capacity());
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            return buffer.get(i) & 0xFF;
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            buffer.put(i, (byte) val);
+        }
+    }
+}
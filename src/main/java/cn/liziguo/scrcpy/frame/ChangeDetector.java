@@ -0,0 +1,184 @@
+package cn.liziguo.scrcpy.frame;
+
+import org.bytedeco.javacv.Frame;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 相邻帧变化检测。按瓦片比较当前帧和上一帧，字节差值超过阈值的瓦片记为脏，合并成脏矩形并给出变化比例。
+ *
+ * <p>运行时加载了 jdk.incubator.vector 模块({@code --add-modules jdk.incubator.vector})时比较使用 SIMD 指令，
+ * 没有加载时自动退回标量比较，结果相同。
+ * 上一帧保存在检测器自己的数组中，尺寸不变时检测过程不分配内存，可以直接用于 {@link FramePool} 中的帧。
+ * YUV420P/NATIVE 这类平面格式只比较亮度平面。
+ *
+ * <p>非线程安全，每个消费者使用自己的检测器。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class ChangeDetector {
+
+    /**
+     * 运行时是否可以使用 Vector API
+     */
+    public static final boolean VECTOR_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final int tileSize;
+    private int threshold;
+    private VectorDiffCounter vectorCounter;
+    private boolean vectorized = VECTOR_AVAILABLE;
+
+    private int width;
+    private int height;
+    private int bytesPerPixel;
+    private int rowBytes;
+    private int tilesX;
+    private int tilesY;
+    private byte[] previous;
+    private byte[] row;
+    private int[] tileCounts;
+    private final FrameChanges changes = new FrameChanges();
+
+    public ChangeDetector() {
+        this(32, 8);
+    }
+
+    /**
+     * @param tileSize  瓦片边长(像素)
+     * @param threshold 单个字节的差值超过该值才算变化，用来过滤编码噪声，0表示任何差异都算
+     */
+    public ChangeDetector(int tileSize, int threshold) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be positive");
+        }
+        this.tileSize = tileSize;
+        setThreshold(threshold);
+    }
+
+    /**
+     * 和上一帧比较并把当前帧记为新的上一帧。首帧或尺寸变化时整帧算作变化
+     *
+     * @return 检测结果，由检测器复用
+     */
+    public FrameChanges detect(Frame frame) {
+        boolean planar = frame.image.length > 1;
+        int bpp = planar ? 1 : frame.imageChannels;
+        int stride = planar ? FrameUtil.planeStride(frame, 0) : frame.imageStride;
+        ByteBuffer buffer = (ByteBuffer) frame.image[0];
+        if (previous == null || frame.imageWidth != width || frame.imageHeight != height || bpp != bytesPerPixel) {
+            reset(frame.imageWidth, frame.imageHeight, bpp);
+            for (int y = 0; y < height; y++) {
+                buffer.get(y * stride, previous, y * rowBytes, rowBytes);
+            }
+            changes.setAll(width, height);
+            return changes;
+        }
+        Arrays.fill(tileCounts, 0);
+        int tileBytes = tileSize * bytesPerPixel;
+        long changed = 0;
+        for (int y = 0; y < height; y++) {
+            buffer.get(y * stride, row, 0, rowBytes);
+            int prevOffset = y * rowBytes;
+            int base = (y / tileSize) * tilesX;
+            int rowChanged = 0;
+            for (int tx = 0; tx < tilesX; tx++) {
+                int start = tx * tileBytes;
+                int end = Math.min(start + tileBytes, rowBytes);
+                int n = vectorized ? countVector(prevOffset, start, end) : countScalar(prevOffset, start, end);
+                tileCounts[base + tx] += n;
+                rowChanged += n;
+            }
+            if (rowChanged != 0) {
+                System.arraycopy(row, 0, previous, prevOffset, rowBytes);
+                changed += rowChanged;
+            }
+        }
+        changes.build(tileCounts, tilesX, tilesY, tileSize, width, height, changed, (long) rowBytes * height);
+        return changes;
+    }
+
+    /**
+     * 包装一个消费者，只把有变化的帧连同检测结果交给它，可直接设置为 onFrame
+     */
+    public Consumer<Frame> changesOnly(BiConsumer<Frame, FrameChanges> consumer) {
+        return frame -> {
+            FrameChanges result = detect(frame);
+            if (result.hasChanges()) {
+                consumer.accept(frame, result);
+            }
+        };
+    }
+
+    /**
+     * 丢弃保存的上一帧，下一次检测整帧算作变化
+     */
+    public void reset() {
+        previous = null;
+    }
+
+    private void reset(int width, int height, int bytesPerPixel) {
+        this.width = width;
+        this.height = height;
+        this.bytesPerPixel = bytesPerPixel;
+        this.rowBytes = width * bytesPerPixel;
+        this.tilesX = (width + tileSize - 1) / tileSize;
+        this.tilesY = (height + tileSize - 1) / tileSize;
+        this.previous = new byte[rowBytes * height];
+        this.row = new byte[rowBytes];
+        this.tileCounts = new int[tilesX * tilesY];
+        changes.ensureCapacity(tilesX * tilesY, tilesX);
+    }
+
+    private int countVector(int prevOffset, int start, int end) {
+        if (vectorCounter == null) {
+            vectorCounter = new VectorDiffCounter(threshold);
+        }
+        return vectorCounter.count(row, previous, prevOffset, start, end);
+    }
+
+    private int countScalar(int prevOffset, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (Math.abs((row[i] & 0xFF) - (previous[prevOffset + i] & 0xFF)) > threshold) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(int threshold) {
+        if (threshold < 0 || threshold > 255) {
+            throw new IllegalArgumentException("threshold must be in [0, 255]");
+        }
+        this.threshold = threshold;
+        if (vectorCounter != null) {
+            vectorCounter.setThreshold(threshold);
+        }
+    }
+
+    public boolean isVectorized() {
+        return vectorized;
+    }
+
+    /**
+     * 关闭后使用标量比较，结果与向量版本相同，用于对比测试。运行时没有 Vector API 时无法开启
+     */
+    public void setVectorized(boolean vectorized) {
+        if (vectorized && !VECTOR_AVAILABLE) {
+            throw new IllegalStateException("jdk.incubator.vector is not available, run with --add-modules jdk.incubator.vector");
+        }
+        this.vectorized = vectorized;
+    }
+}
@@ -0,0 +1,180 @@
+package cn.liziguo.scrcpy.frame;
+
+import java.awt.*;
+
+/**
+ * {@link ChangeDetector} 的检测结果：变化比例和合并后的脏矩形(像素坐标)。
+ * 对象由检测器复用，在下一次检测之前有效。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class FrameChanges {
+
+    private int frameWidth;
+    private int frameHeight;
+    private long changedSamples;
+    private long totalSamples;
+    private int dirtyCount;
+    private int[] x = new int[0];
+    private int[] y = new int[0];
+    private int[] width = new int[0];
+    private int[] height = new int[0];
+    /**
+     * 合并过程中底边正好落在当前行顶部的矩形
+     */
+    private int[] open = new int[0];
+    private int[] nextOpen = new int[0];
+
+    void ensureCapacity(int tiles, int tilesX) {
+        if (x.length < tiles) {
+            x = new int[tiles];
+            y = new int[tiles];
+            width = new int[tiles];
+            height = new int[tiles];
+        }
+        if (open.length < tilesX) {
+            open = new int[tilesX];
+            nextOpen = new int[tilesX];
+        }
+    }
+
+    /**
+     * 整帧都算作变化(首帧或尺寸变化)
+     */
+    void setAll(int frameWidth, int frameHeight) {
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.changedSamples = 1;
+        this.totalSamples = 1;
+        x[0] = 0;
+        y[0] = 0;
+        width[0] = frameWidth;
+        height[0] = frameHeight;
+        dirtyCount = 1;
+    }
+
+    /**
+     * 把有变化的瓦片逐行合并成横向连续段，和上一行左右边界相同的段向下延伸
+     */
+    void build(int[] tileCounts, int tilesX, int tilesY, int tileSize, int frameWidth, int frameHeight,
+               long changedSamples, long totalSamples) {
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.changedSamples = changedSamples;
+        this.totalSamples = totalSamples;
+        dirtyCount = 0;
+        int openCount = 0;
+        for (int ty = 0; ty < tilesY; ty++) {
+            int top = ty * tileSize;
+            int bottom = Math.min(top + tileSize, frameHeight);
+            int nextOpenCount = 0;
+            int base = ty * tilesX;
+            int tx = 0;
+            while (tx < tilesX) {
+                if (tileCounts[base + tx] == 0) {
+                    tx++;
+                    continue;
+                }
+                int start = tx;
+                while (tx < tilesX && tileCounts[base + tx] != 0) {
+                    tx++;
+                }
+                int left = start * tileSize;
+                int right = Math.min(tx * tileSize, frameWidth);
+                int index = -1;
+                for (int i = 0; i < openCount; i++) {
+                    int candidate = open[i];
+                    if (x[candidate] == left && width[candidate] == right - left) {
+                        index = candidate;
+                        break;
+                    }
+                }
+                if (index >= 0) {
+                    height[index] = bottom - y[index];
+                } else {
+                    index = dirtyCount++;
+                    x[index] = left;
+                    y[index] = top;
+                    width[index] = right - left;
+                    height[index] = bottom - top;
+                }
+                nextOpen[nextOpenCount++] = index;
+            }
+            int[] swap = open;
+            open = nextOpen;
+            nextOpen = swap;
+            openCount = nextOpenCount;
+        }
+    }
+
+    /**
+     * 是否有任何变化，为 false 时可以跳过这一帧
+     */
+    public boolean hasChanges() {
+        return dirtyCount > 0;
+    }
+
+    /**
+     * 超过阈值的采样(字节)占比，范围0~1
+     */
+    public double getChangeRatio() {
+        return totalSamples == 0 ? 0 : (double) changedSamples / totalSamples;
+    }
+
+    public int getDirtyCount() {
+        return dirtyCount;
+    }
+
+    public int getX(int index) {
+        return x[checkIndex(index)];
+    }
+
+    public int getY(int index) {
+        return y[checkIndex(index)];
+    }
+
+    public int getWidth(int index) {
+        return width[checkIndex(index)];
+    }
+
+    public int getHeight(int index) {
+        return height[checkIndex(index)];
+    }
+
+    /**
+     * 以 Rectangle 形式返回脏矩形，每次调用都会新建对象
+     */
+    public Rectangle getDirtyRectangle(int index) {
+        checkIndex(index);
+        return new Rectangle(x[index], y[index], width[index], height[index]);
+    }
+
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= dirtyCount) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("FrameChanges{ratio=")
+                .append(String.format("%.4f", getChangeRatio())).append(", dirty=[");
+        for (int i = 0; i < dirtyCount; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(x[i]).append(',').append(y[i]).append(' ').append(width[i]).append('x').append(height[i]);
+        }
+        return sb.append("]}").toString();
+    }
+}
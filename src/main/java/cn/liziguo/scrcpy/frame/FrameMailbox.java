@@ -0,0 +1,151 @@
+package cn.liziguo.scrcpy.frame;
+
+import cn.liziguo.scrcpy.constant.PoolExhaustedPolicy;
+import org.bytedeco.javacv.Frame;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 最新帧信箱：解码线程只管 {@link #publish(Frame)} 最新的一帧，永远不会阻塞；
+ * 消费者通过 {@link #latestFrame()} 轮询或者 {@link #awaitNext(long, long, TimeUnit)} 等待新帧，总是拿到最新的那一帧。
+ * 消费者来不及处理的中间帧会被直接覆盖，并计入 {@link #getDroppedCount()}。
+ *
+ * <p>帧缓冲区来自内部的 {@link FramePool}，不会每帧分配内存。消费者拿到的 {@link PooledFrame} 用完后必须释放。
+ * 持有帧的时间过长时，缓冲区可能被强制回收(见 {@link PooledFrame#isValid()})，因此帧池容量应不小于同时持有帧的消费者数量+2。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class FrameMailbox implements Closeable {
+
+    private final FramePool pool;
+    private final AtomicLong droppedCount = new AtomicLong();
+    /**
+     * 信箱中的最新帧，信箱自身持有一个引用
+     */
+    private PooledFrame latest;
+    /**
+     * 最新帧是否已经被消费者取走过
+     */
+    private boolean latestTaken;
+    private boolean closed;
+
+    public FrameMailbox() {
+        this(3);
+    }
+
+    /**
+     * @param capacity 缓冲区数量，不能小于2
+     */
+    public FrameMailbox(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        // 发布方永远不能阻塞，缓冲区不够时回收被持有最久的旧帧
+        this.pool = new FramePool(capacity, PoolExhaustedPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * 发布一帧，替换信箱中尚未被取走的旧帧。只会拷贝，不会阻塞
+     *
+     * @param frame 解码器输出的帧(调用返回后可以被解码器复用)
+     */
+    public void publish(Frame frame) {
+        PooledFrame pooledFrame;
+        try {
+            pooledFrame = pool.acquire(frame);
+        } catch (InterruptedException e) {
+            // DROP_OLDEST 策略不会等待
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (pooledFrame == null) {
+            return;
+        }
+        PooledFrame old;
+        synchronized (this) {
+            if (closed) {
+                pooledFrame.release();
+                return;
+            }
+            old = latest;
+            if (old != null && !latestTaken) {
+                droppedCount.incrementAndGet();
+            }
+            latest = pooledFrame;
+            latestTaken = false;
+            notifyAll();
+        }
+        if (old != null) {
+            old.release();
+        }
+    }
+
+    /**
+     * 获取最新帧，不等待
+     *
+     * @return 最新帧的一个新引用(用完后必须释放)，还没有帧时返回 null
+     */
+    public synchronized PooledFrame latestFrame() {
+        if (latest == null) {
+            return null;
+        }
+        PooledFrame frame = latest.retain();
+        if (frame != null) {
+            latestTaken = true;
+        }
+        return frame;
+    }
+
+    /**
+     * 等待一个序号大于 afterSequence 的新帧
+     *
+     * @param afterSequence 上一次拿到的帧序号，第一次调用传0
+     * @return 最新帧的一个新引用(用完后必须释放)，超时或信箱已关闭时返回 null
+     */
+    public synchronized PooledFrame awaitNext(long afterSequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!closed && (latest == null || latest.sequence() <= afterSequence)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        if (closed) {
+            return null;
+        }
+        return latestFrame();
+    }
+
+    /**
+     * 被覆盖而从未被消费者取走的帧数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 关闭信箱并唤醒所有等待的消费者
+     */
+    @Override
+    public void close() {
+        PooledFrame old;
+        synchronized (this) {
+            closed = true;
+            old = latest;
+            latest = null;
+            notifyAll();
+        }
+        if (old != null) {
+            old.release();
+        }
+        pool.close();
+    }
+}
@@ -0,0 +1,258 @@
+package cn.liziguo.scrcpy.frame;
+
+import cn.liziguo.scrcpy.constant.PoolExhaustedPolicy;
+import org.bytedeco.javacv.Frame;
+
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 多阶段帧处理流水线：解码 -> 转换(工作线程池并行) -> 消费(单线程，按帧顺序)。
+ *
+ * <p>解码线程只负责把帧拷贝进预分配的缓冲区并提交，转换(例如 {@code Java2DFrameConverter}、转灰度、转Mat)
+ * 在工作线程池中并行执行，多核机器上解码与转换可以重叠进行。消费者按照提交顺序依次收到转换结果。
+ *
+ * <p>每个阶段的在途帧数都有上限：正在转换的帧数不超过 maxConverting，等待消费(含转换中)的帧数不超过
+ * maxConverting + maxPending。超出上限时按 {@link PoolExhaustedPolicy} 处理(不支持 DROP_OLDEST)。
+ *
+ * <p>转换函数通常不是线程安全的(例如 {@code Java2DFrameConverter})，因此通过 converterFactory 为每个工作线程创建一个。
+ * 转换函数的返回值必须与输入帧无关，输入帧在转换完成后立即被复用。
+ *
+ * @param <T> 转换结果类型
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class FramePipeline<T> implements Closeable {
+
+    private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+    private final FramePool pool;
+    private final PoolExhaustedPolicy policy;
+    private final ExecutorService workers;
+    private final ThreadLocal<Function<Frame, ? extends T>> converter;
+    private final Consumer<? super T> consumer;
+    private final BlockingQueue<Task<T>> pending;
+    private final Thread consumerThread;
+
+    private final StageTimer decodeTimer = new StageTimer("decode");
+    private final StageTimer convertTimer = new StageTimer("convert");
+    private final StageTimer consumeTimer = new StageTimer("consume");
+    private final StageTimer latencyTimer = new StageTimer("latency");
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param converterFactory 转换函数工厂，每个工作线程调用一次
+     * @param consumer         消费者，在单独的消费线程中按帧顺序调用
+     * @param workers          转换线程数
+     * @param maxConverting    同时转换的最大帧数
+     * @param maxPending       转换完成后等待消费的最大帧数
+     * @param policy           在途帧数达到上限时的处理策略
+     */
+    public FramePipeline(Supplier<? extends Function<Frame, ? extends T>> converterFactory,
+                         Consumer<? super T> consumer,
+                         int workers, int maxConverting, int maxPending,
+                         PoolExhaustedPolicy policy) {
+        Objects.requireNonNull(converterFactory, "converterFactory must not be null");
+        this.consumer = Objects.requireNonNull(consumer, "consumer must not be null");
+        this.policy = Objects.requireNonNull(policy, "policy must not be null");
+        if (policy == PoolExhaustedPolicy.DROP_OLDEST) {
+            throw new IllegalArgumentException("FramePipeline does not support DROP_OLDEST");
+        }
+        if (workers <= 0 || maxConverting <= 0 || maxPending < 0) {
+            throw new IllegalArgumentException("workers and maxConverting must be greater than 0, maxPending must not be negative");
+        }
+        this.pool = new FramePool(maxConverting, policy);
+        this.pending = new ArrayBlockingQueue<>(maxConverting + maxPending);
+        this.converter = ThreadLocal.withInitial(converterFactory);
+        this.workers = Executors.newFixedThreadPool(workers, Thread.ofPlatform()
+                .name("scrcpy-pipeline-worker-" + THREAD_ID.incrementAndGet() + "-", 0)
+                .daemon(true)
+                .factory());
+        this.consumerThread = Thread.ofPlatform()
+                .name("scrcpy-pipeline-consumer-" + THREAD_ID.get())
+                .daemon(true)
+                .start(this::consumeLoop);
+    }
+
+    /**
+     * 使用默认参数：工作线程数为CPU核数的一半，在途帧数为工作线程数，等待消费的帧数为2，上限时丢弃新帧
+     */
+    public FramePipeline(Supplier<? extends Function<Frame, ? extends T>> converterFactory, Consumer<? super T> consumer) {
+        this(converterFactory, consumer, defaultWorkers(), defaultWorkers(), 2, PoolExhaustedPolicy.DROP_NEWEST);
+    }
+
+    private static int defaultWorkers() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    /**
+     * 提交一帧，由解码线程调用
+     *
+     * @param frame 解码器输出的帧(调用返回后可以被解码器复用)
+     * @return 是否提交成功，在途帧数达到上限而被丢弃时返回 false
+     */
+    public boolean submit(Frame frame) throws InterruptedException {
+        if (closed) {
+            return false;
+        }
+        long submitNanos = System.nanoTime();
+        PooledFrame pooledFrame = pool.acquire(frame);
+        if (pooledFrame == null) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        Task<T> task = new Task<>(pooledFrame, submitNanos);
+        if (policy == PoolExhaustedPolicy.BLOCK) {
+            pending.put(task);
+        } else if (!pending.offer(task)) {
+            pooledFrame.release();
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        // 提交期间可能被 close()，线程池拒绝任务时不能把异常抛给解码线程
+        if (closed) {
+            discard(task);
+            return false;
+        }
+        try {
+            workers.execute(() -> convert(task));
+        } catch (RejectedExecutionException e) {
+            discard(task);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 撤回没有交给工作线程的任务。close() 已经从队列中取走并释放过的帧不再释放
+     */
+    private void discard(Task<T> task) {
+        task.result.cancel(false);
+        if (pending.remove(task)) {
+            task.frame.release();
+        }
+    }
+
+    private void convert(Task<T> task) {
+        long start = System.nanoTime();
+        try {
+            task.result.complete(converter.get().apply(task.frame.frame()));
+        } catch (Throwable e) {
+            task.result.completeExceptionally(e);
+        } finally {
+            task.frame.release();
+            convertTimer.record(System.nanoTime() - start);
+        }
+    }
+
+    private void consumeLoop() {
+        while (!closed) {
+            Task<T> task;
+            T result;
+            try {
+                task = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (task == null) {
+                    continue;
+                }
+                // 按提交顺序等待转换结果，保证消费顺序与帧顺序一致
+                result = task.result.get();
+            } catch (InterruptedException e) {
+                return;
+            } catch (ExecutionException e) {
+                errorCount.incrementAndGet();
+                continue;
+            } catch (CancellationException e) {
+                // 关闭期间撤回的任务
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                consumer.accept(result);
+            } catch (RuntimeException e) {
+                errorCount.incrementAndGet();
+            }
+            long end = System.nanoTime();
+            consumeTimer.record(end - start);
+            latencyTimer.record(end - task.submitNanos);
+        }
+    }
+
+    /**
+     * 解码阶段耗时，由解码线程通过 {@link #getDecodeTimer()} 记录
+     */
+    public StageTimer getDecodeTimer() {
+        return decodeTimer;
+    }
+
+    /**
+     * 转换阶段耗时
+     */
+    public StageTimer getConvertTimer() {
+        return convertTimer;
+    }
+
+    /**
+     * 消费阶段耗时
+     */
+    public StageTimer getConsumeTimer() {
+        return consumeTimer;
+    }
+
+    /**
+     * 从提交到消费完成的端到端耗时
+     */
+    public StageTimer getLatencyTimer() {
+        return latencyTimer;
+    }
+
+    /**
+     * 因在途帧数达到上限被丢弃的帧数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 转换或消费时抛出异常的帧数
+     */
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        pool.close();
+        workers.shutdownNow();
+        consumerThread.interrupt();
+        Task<T> task;
+        while ((task = pending.poll()) != null) {
+            task.frame.release();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FramePipeline{" + decodeTimer + ", " + convertTimer + ", " + consumeTimer + ", " + latencyTimer
+                + ", dropped=" + droppedCount.get() + ", errors=" + errorCount.get() + "}";
+    }
+
+    private static final class Task<T> {
+        final PooledFrame frame;
+        final long submitNanos;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Task(PooledFrame frame, long submitNanos) {
+            this.frame = frame;
+            this.submitNanos = submitNanos;
+        }
+    }
+}
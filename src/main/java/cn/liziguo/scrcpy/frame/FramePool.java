@@ -0,0 +1,179 @@
+package cn.liziguo.scrcpy.frame;
+
+import cn.liziguo.scrcpy.constant.PoolExhaustedPolicy;
+import org.bytedeco.javacv.Frame;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 固定容量的帧池：预先分配一组帧缓冲区，解码线程把解码结果拷贝进空闲缓冲区后以 {@link PooledFrame} 的形式借给消费者，
+ * 消费者用完之后调用 {@link PooledFrame#release()} 归还，从而避免每帧 {@code frame.clone()} 带来的内存分配和GC压力。
+ *
+ * <p>缓冲区在第一次使用时按帧的实际格式分配，帧格式变化(例如旋转屏幕)时会重新分配。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class FramePool implements Closeable {
+
+    private final int capacity;
+    private final PoolExhaustedPolicy policy;
+    /**
+     * 空闲槽位
+     */
+    private final ArrayDeque<Slot> free;
+    /**
+     * 已借出的槽位，按借出先后排序，队头是借出最久的
+     */
+    private final ArrayDeque<Slot> leased;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private long sequence;
+    private boolean closed;
+
+    public FramePool(int capacity, PoolExhaustedPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.policy = Objects.requireNonNull(policy, "policy must not be null");
+        this.free = new ArrayDeque<>(capacity);
+        this.leased = new ArrayDeque<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            free.add(new Slot());
+        }
+    }
+
+    /**
+     * 从池中借出一个缓冲区并把 src 拷贝进去
+     *
+     * @param src 解码器输出的帧(调用返回后可以被解码器复用)
+     * @return 借出的帧，帧池已耗尽且按策略丢弃了当前帧或帧池已关闭时返回 null
+     * @throws InterruptedException BLOCK 策略下等待时被中断
+     */
+    public PooledFrame acquire(Frame src) throws InterruptedException {
+        Slot slot;
+        long seq;
+        synchronized (this) {
+            slot = takeSlot();
+            if (slot == null) {
+                return null;
+            }
+            seq = ++sequence;
+        }
+        // 拷贝在锁外进行，此时槽位既不在free也不在leased中，不会被其他线程访问
+        if (slot.frame == null || !FrameUtil.sameGeometry(src, slot.frame)) {
+            // 旧缓冲区可能还在被强制回收前的持有者读取，不主动释放，交给GC回收
+            slot.frame = FrameUtil.allocate(src);
+        }
+        FrameUtil.copy(src, slot.frame);
+        synchronized (this) {
+            if (closed) {
+                free.add(slot);
+                return null;
+            }
+            leased.add(slot);
+            slot.refs = 1;
+            return new PooledFrame(this, slot, slot.generation, seq);
+        }
+    }
+
+    private Slot takeSlot() throws InterruptedException {
+        while (!closed) {
+            Slot slot = free.poll();
+            if (slot != null) {
+                return slot;
+            }
+            switch (policy) {
+                case DROP_NEWEST:
+                    droppedCount.incrementAndGet();
+                    return null;
+                case DROP_OLDEST:
+                    slot = leased.poll();
+                    if (slot == null) {
+                        // 所有槽位都在拷贝中(多个线程同时acquire)，按丢弃最新帧处理
+                        droppedCount.incrementAndGet();
+                        return null;
+                    }
+                    // 让旧的借出凭证失效
+                    slot.generation++;
+                    droppedCount.incrementAndGet();
+                    return slot;
+                case BLOCK:
+                    wait();
+                    break;
+            }
+        }
+        return null;
+    }
+
+    synchronized boolean retain(Slot slot, long generation) {
+        if (slot.generation != generation) {
+            return false;
+        }
+        slot.refs++;
+        return true;
+    }
+
+    synchronized void release(Slot slot, long generation) {
+        if (slot.generation != generation) {
+            // 已经被 DROP_OLDEST 策略强制回收
+            return;
+        }
+        if (--slot.refs > 0) {
+            return;
+        }
+        if (!leased.remove(slot)) {
+            return;
+        }
+        slot.generation++;
+        free.add(slot);
+        notifyAll();
+    }
+
+    static boolean isValid(Slot slot, long generation) {
+        return slot.generation == generation;
+    }
+
+    /**
+     * 因帧池耗尽而被丢弃(或被强制回收)的帧数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public PoolExhaustedPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 当前空闲的缓冲区数量
+     */
+    public synchronized int available() {
+        return free.size();
+    }
+
+    /**
+     * 关闭帧池并唤醒所有阻塞在 {@link #acquire(Frame)} 上的线程。已借出的帧仍然可以读取和释放
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    static final class Slot {
+        Frame frame;
+        volatile long generation;
+        /**
+         * 引用计数，受帧池的锁保护
+         */
+        int refs;
+    }
+}
@@ -0,0 +1,165 @@
+package cn.liziguo.scrcpy.frame;
+
+import cn.liziguo.scrcpy.constant.OverflowPolicy;
+import cn.liziguo.scrcpy.constant.PoolExhaustedPolicy;
+import org.bytedeco.javacv.Frame;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多订阅者的帧发布器(基于 {@link Flow.Publisher})：一台设备的画面可以同时交给显示、录制、分析等多个订阅者。
+ *
+ * <p>每一帧只拷贝一次到帧池的缓冲区中，所有订阅者通过引用计数共享同一个缓冲区，不会为每个订阅者单独拷贝。
+ * 订阅者在 {@code onNext} 中收到的 {@link PooledFrame} 用完后必须调用 {@link PooledFrame#release()}，
+ * 所有订阅者都释放之后缓冲区才会被复用。
+ *
+ * <p>每个订阅者有独立的执行器、队列深度和 {@link OverflowPolicy}，慢订阅者只会丢弃自己的帧，
+ * 不会影响其他订阅者(LOSSLESS_BOUNDED 策略除外，它会让发布方等待)。
+ * 共享缓冲区的数量随订阅者的队列深度增长，足够每个订阅者排满队列并各处理一帧；
+ * 订阅者长时间持有帧不释放导致缓冲区耗尽时，按 {@link PoolExhaustedPolicy#DROP_OLDEST} 回收最旧的帧，解码线程不会因此等待。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class FramePublisher implements Flow.Publisher<PooledFrame>, Closeable {
+
+    private final int minCapacity;
+    private volatile FramePool pool;
+    private final List<FrameSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param capacity 最少的共享缓冲区数量，订阅者增加时按队列深度自动扩充
+     */
+    public FramePublisher(int capacity) {
+        this.minCapacity = capacity;
+        this.pool = new FramePool(capacity, PoolExhaustedPolicy.DROP_OLDEST);
+    }
+
+    public FramePublisher() {
+        this(8);
+    }
+
+    /**
+     * 以默认参数订阅：每个任务一个虚拟线程，队列深度1，只保留最新帧。执行器在订阅结束时关闭
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super PooledFrame> subscriber) {
+        subscribe(subscriber, Executors.newVirtualThreadPerTaskExecutor(), true, 1, OverflowPolicy.LATEST_ONLY, 1);
+    }
+
+    /**
+     * @param subscriber 订阅者
+     * @param executor   向订阅者发送信号的执行器，同一订阅者的信号不会并发执行
+     * @param queueDepth 订阅者队列深度
+     * @param policy     队列满时的溢出策略
+     * @param everyNth   EVERY_NTH 策略下每隔多少帧取一帧，其他策略忽略
+     */
+    public void subscribe(Flow.Subscriber<? super PooledFrame> subscriber, Executor executor,
+                          int queueDepth, OverflowPolicy policy, int everyNth) {
+        subscribe(subscriber, executor, false, queueDepth, policy, everyNth);
+    }
+
+    private void subscribe(Flow.Subscriber<? super PooledFrame> subscriber, Executor executor, boolean ownsExecutor,
+                           int queueDepth, OverflowPolicy policy, int everyNth) {
+        Objects.requireNonNull(subscriber, "subscriber must not be null");
+        Objects.requireNonNull(executor, "executor must not be null");
+        Objects.requireNonNull(policy, "policy must not be null");
+        if (queueDepth <= 0 || everyNth <= 0) {
+            throw new IllegalArgumentException("queueDepth and everyNth must be greater than 0");
+        }
+        FrameSubscription subscription = new FrameSubscription(this, subscriber, executor, ownsExecutor,
+                queueDepth, policy, everyNth);
+        subscriptions.add(subscription);
+        ensureCapacity();
+        subscription.start();
+        if (closed) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * 发布一帧，由解码线程调用
+     *
+     * @param frame 解码器输出的帧(调用返回后可以被解码器复用)
+     */
+    public void publish(Frame frame) throws InterruptedException {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        PooledFrame shared = pool.acquire(frame);
+        if (shared == null) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        try {
+            for (FrameSubscription subscription : subscriptions) {
+                subscription.offer(shared);
+            }
+        } finally {
+            shared.release();
+        }
+    }
+
+    /**
+     * 每个订阅者排满队列并且正在处理一帧，再加上正在拷贝的一帧，缓冲区也不会耗尽。
+     * 容量不够时换一个更大的帧池，已经借出的帧仍然归还到旧的帧池
+     */
+    private synchronized void ensureCapacity() {
+        int required = 1;
+        for (FrameSubscription subscription : subscriptions) {
+            required += subscription.getQueueDepth() + 1;
+        }
+        FramePool current = pool;
+        if (closed || current.getCapacity() >= Math.max(required, minCapacity)) {
+            return;
+        }
+        pool = new FramePool(Math.max(required, current.getCapacity() * 2), PoolExhaustedPolicy.DROP_OLDEST);
+        current.close();
+    }
+
+    void remove(FrameSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * 所有订阅者因队列溢出丢弃的帧数之和(不包含已经取消的订阅者)
+     */
+    public long getDroppedCount() {
+        long count = droppedCount.get();
+        for (FrameSubscription subscription : subscriptions) {
+            count += subscription.getDroppedCount();
+        }
+        return count;
+    }
+
+    /**
+     * 关闭发布器，向所有订阅者发送 onComplete
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (FrameSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        synchronized (this) {
+            pool.close();
+        }
+    }
+}
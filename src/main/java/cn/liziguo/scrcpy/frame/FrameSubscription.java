@@ -0,0 +1,240 @@
+package cn.liziguo.scrcpy.frame;
+
+import cn.liziguo.scrcpy.constant.OverflowPolicy;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link FramePublisher} 为每个订阅者创建的订阅：有自己的执行器、队列深度和溢出策略。
+ * 同一时刻最多只有一个任务在执行器中向订阅者发送信号，保证信号按顺序串行发送。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+final class FrameSubscription implements Flow.Subscription {
+
+    private final FramePublisher publisher;
+    private final Flow.Subscriber<? super PooledFrame> subscriber;
+    private final Executor executor;
+    /**
+     * 执行器是否由发布器为本订阅创建，是则在订阅结束时关闭
+     */
+    private final boolean ownsExecutor;
+    private final int queueDepth;
+    private final OverflowPolicy policy;
+    private final int everyNth;
+    private final ArrayDeque<PooledFrame> queue;
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private long counter;
+    private long demand;
+    private boolean cancelled;
+    private boolean completed;
+    /**
+     * request(n <= 0) 产生的错误，由发送任务串行地交给 onError
+     */
+    private Throwable pendingError;
+    /**
+     * 是否已经有发送任务在执行器中，初始为 true：第一个任务负责发送 onSubscribe
+     */
+    private boolean draining = true;
+
+    FrameSubscription(FramePublisher publisher, Flow.Subscriber<? super PooledFrame> subscriber,
+                      Executor executor, boolean ownsExecutor, int queueDepth, OverflowPolicy policy, int everyNth) {
+        this.publisher = publisher;
+        this.subscriber = subscriber;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.queueDepth = queueDepth;
+        this.policy = policy;
+        this.everyNth = everyNth;
+        this.queue = new ArrayDeque<>(queueDepth);
+    }
+
+    void start() {
+        executor.execute(() -> {
+            try {
+                subscriber.onSubscribe(this);
+            } catch (Throwable e) {
+                cancel();
+                return;
+            }
+            drain();
+        });
+    }
+
+    /**
+     * 由发布线程调用，向订阅者的队列中放入共享帧的一个引用
+     */
+    void offer(PooledFrame shared) throws InterruptedException {
+        if (policy == OverflowPolicy.EVERY_NTH && counter++ % everyNth != 0) {
+            return;
+        }
+        PooledFrame frame = shared.retain();
+        if (frame == null) {
+            return;
+        }
+        synchronized (this) {
+            if (policy == OverflowPolicy.LOSSLESS_BOUNDED) {
+                while (!cancelled && !completed && queue.size() >= queueDepth) {
+                    wait();
+                }
+            } else {
+                while (queue.size() >= queueDepth) {
+                    queue.poll().release();
+                    droppedCount.incrementAndGet();
+                }
+            }
+            if (cancelled || completed) {
+                frame.release();
+                return;
+            }
+            queue.add(frame);
+        }
+        schedule();
+    }
+
+    void complete() {
+        synchronized (this) {
+            if (cancelled || completed) {
+                return;
+            }
+            completed = true;
+            releaseQueued();
+            notifyAll();
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        synchronized (this) {
+            if (draining || cancelled) {
+                return;
+            }
+            if (!completed && pendingError == null && (demand == 0 || queue.isEmpty())) {
+                return;
+            }
+            draining = true;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // 执行器已关闭(订阅在此期间结束)
+            synchronized (this) {
+                draining = false;
+            }
+        }
+    }
+
+    private void drain() {
+        Throwable error;
+        while (true) {
+            PooledFrame frame;
+            synchronized (this) {
+                if (cancelled) {
+                    draining = false;
+                    return;
+                }
+                error = pendingError;
+                if (error != null) {
+                    cancelled = true;
+                    draining = false;
+                    releaseQueued();
+                    notifyAll();
+                    break;
+                }
+                if (completed) {
+                    cancelled = true;
+                    draining = false;
+                    break;
+                }
+                if (demand == 0 || queue.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                frame = queue.poll();
+                demand--;
+                notifyAll();
+            }
+            try {
+                subscriber.onNext(frame);
+            } catch (Throwable e) {
+                frame.release();
+                cancel();
+                subscriber.onError(e);
+                return;
+            }
+        }
+        publisher.remove(this);
+        try {
+            if (error != null) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onComplete();
+            }
+        } finally {
+            terminate();
+        }
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            synchronized (this) {
+                if (cancelled || pendingError != null) {
+                    return;
+                }
+                pendingError = new IllegalArgumentException("non-positive subscription request: " + n);
+            }
+            schedule();
+            return;
+        }
+        synchronized (this) {
+            demand += n;
+            if (demand < 0) {
+                demand = Long.MAX_VALUE;
+            }
+        }
+        schedule();
+    }
+
+    @Override
+    public void cancel() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            releaseQueued();
+            notifyAll();
+        }
+        publisher.remove(this);
+        terminate();
+    }
+
+    private void terminate() {
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private void releaseQueued() {
+        PooledFrame frame;
+        while ((frame = queue.poll()) != null) {
+            frame.release();
+        }
+    }
+
+    int getQueueDepth() {
+        return queueDepth;
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -0,0 +1,133 @@
+package cn.liziguo.scrcpy.frame;
+
+import org.bytedeco.javacv.Frame;
+
+import java.nio.*;
+
+/**
+ * 帧缓冲区工具方法
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class FrameUtil {
+
+    private FrameUtil() {
+    }
+
+    /**
+     * 判断两帧的图像格式(宽高、位深、通道数、行跨度)是否一致，一致时可以直接拷贝缓冲区
+     */
+    public static boolean sameGeometry(Frame a, Frame b) {
+        return a.imageWidth == b.imageWidth
+                && a.imageHeight == b.imageHeight
+                && a.imageDepth == b.imageDepth
+                && a.imageChannels == b.imageChannels
+                && a.imageStride == b.imageStride
+                && a.image != null && b.image != null
+                && a.image.length == b.image.length
+                && (a.image.length == 1 || samePlaneCapacity(a, b));
+    }
+
+    private static boolean samePlaneCapacity(Frame a, Frame b) {
+        for (int i = 0; i < a.image.length; i++) {
+            if (a.image[i].capacity() != b.image[i].capacity()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按 src 的图像格式分配一个新的帧(缓冲区为堆外内存)，平面格式按 src 每个平面的容量分配
+     */
+    public static Frame allocate(Frame src) {
+        if (src.image.length == 1) {
+            return new Frame(src.imageWidth, src.imageHeight, src.imageDepth, src.imageChannels, src.imageStride);
+        }
+        Frame frame = new Frame();
+        frame.imageWidth = src.imageWidth;
+        frame.imageHeight = src.imageHeight;
+        frame.imageDepth = src.imageDepth;
+        frame.imageChannels = src.imageChannels;
+        frame.imageStride = src.imageStride;
+        frame.image = new Buffer[src.image.length];
+        for (int i = 0; i < src.image.length; i++) {
+            frame.image[i] = ByteBuffer.allocateDirect(src.image[i].capacity());
+        }
+        return frame;
+    }
+
+    /**
+     * 分配一个紧密排列的YUV420P平面帧：Y平面行跨度为宽度，U、V平面行跨度为宽度的一半(向上取整)
+     */
+    public static Frame allocateYuv420p(int width, int height) {
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        Frame frame = new Frame();
+        frame.imageWidth = width;
+        frame.imageHeight = height;
+        frame.imageDepth = Frame.DEPTH_UBYTE;
+        frame.imageChannels = 1;
+        frame.imageStride = width;
+        frame.image = new Buffer[]{
+                ByteBuffer.allocateDirect(width * height),
+                ByteBuffer.allocateDirect(chromaWidth * chromaHeight),
+                ByteBuffer.allocateDirect(chromaWidth * chromaHeight)
+        };
+        return frame;
+    }
+
+    /**
+     * 平面格式帧中第 plane 个平面的行跨度(字节)。Y平面为 imageStride，U、V平面按平面容量除以平面高度计算
+     */
+    public static int planeStride(Frame frame, int plane) {
+        if (plane == 0) {
+            return frame.imageStride;
+        }
+        return frame.image[plane].capacity() / ((frame.imageHeight + 1) / 2);
+    }
+
+    /**
+     * 把 src 的图像数据拷贝到 dst 已分配好的缓冲区中，不分配新内存
+     *
+     * @throws IllegalArgumentException 两帧的图像格式不一致
+     */
+    public static void copy(Frame src, Frame dst) {
+        if (!sameGeometry(src, dst)) {
+            throw new IllegalArgumentException("帧格式不一致 无法拷贝");
+        }
+        for (int i = 0; i < src.image.length; i++) {
+            copyBuffer(src.image[i], dst.image[i]);
+        }
+        dst.keyFrame = src.keyFrame;
+        dst.pictType = src.pictType;
+        dst.timestamp = src.timestamp;
+    }
+
+    static void copyBuffer(Buffer src, Buffer dst) {
+        if (src instanceof ByteBuffer s && dst instanceof ByteBuffer d) {
+            d.clear();
+            d.put(s.duplicate().clear());
+            d.clear();
+        } else if (src instanceof ShortBuffer s && dst instanceof ShortBuffer d) {
+            d.clear();
+            d.put(s.duplicate().clear());
+            d.clear();
+        } else if (src instanceof IntBuffer s && dst instanceof IntBuffer d) {
+            d.clear();
+            d.put(s.duplicate().clear());
+            d.clear();
+        } else if (src instanceof FloatBuffer s && dst instanceof FloatBuffer d) {
+            d.clear();
+            d.put(s.duplicate().clear());
+            d.clear();
+        } else if (src instanceof DoubleBuffer s && dst instanceof DoubleBuffer d) {
+            d.clear();
+            d.put(s.duplicate().clear());
+            d.clear();
+        } else {
+            throw new IllegalArgumentException("不支持的缓冲区类型: " + src.getClass().getName());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package cn.liziguo.scrcpy.frame;
+
+import java.util.Objects;
+
+/**
+ * 用0~1的归一化坐标表示的矩形区域，与分辨率和缩放无关
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public final class NormalizedRect {
+
+    /**
+     * 整个画面
+     */
+    public static final NormalizedRect FULL = new NormalizedRect(0, 0, 1, 1);
+
+    private final double x;
+    private final double y;
+    private final double width;
+    private final double height;
+
+    public NormalizedRect(double x, double y, double width, double height) {
+        if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > 1 || y + height > 1) {
+            throw new IllegalArgumentException("region out of [0, 1]: " + x + "," + y + " " + width + "x" + height);
+        }
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 换算成给定尺寸下的像素左边界
+     */
+    public int left(int frameWidth) {
+        return (int) Math.floor(x * frameWidth);
+    }
+
+    public int top(int frameHeight) {
+        return (int) Math.floor(y * frameHeight);
+    }
+
+    /**
+     * 换算成给定尺寸下的像素宽度，至少为1
+     */
+    public int pixelWidth(int frameWidth) {
+        int left = left(frameWidth);
+        return Math.max(1, Math.min(frameWidth, (int) Math.ceil((x + width) * frameWidth)) - left);
+    }
+
+    public int pixelHeight(int frameHeight) {
+        int top = top(frameHeight);
+        return Math.max(1, Math.min(frameHeight, (int) Math.ceil((y + height) * frameHeight)) - top);
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NormalizedRect that)) return false;
+        return Double.compare(x, that.x) == 0 && Double.compare(y, that.y) == 0
+                && Double.compare(width, that.width) == 0 && Double.compare(height, that.height) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(x, y, width, height);
+    }
+
+    @Override
+    public String toString() {
+        return "NormalizedRect{" + x + "," + y + " " + width + "x" + height + '}';
+    }
+}
@@ -0,0 +1,73 @@
+package cn.liziguo.scrcpy.frame;
+
+import org.bytedeco.javacv.Frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 64位差值哈希(dHash)：把区域缩成9x8的灰度图，比较每行相邻格子的亮度。
+ * 对缩放、编码噪声和轻微亮度变化不敏感，两个哈希的汉明距离越小画面越相似。
+ *
+ * <p>每个格子只取4x4个采样点，计算一次只读约1000个像素，不分配内存。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public final class PerceptualHash {
+
+    private static final int COLS = 9;
+    private static final int ROWS = 8;
+    private static final int SAMPLES = 4;
+
+    private PerceptualHash() {
+    }
+
+    public static long compute(Frame frame) {
+        return compute(frame, NormalizedRect.FULL);
+    }
+
+    /**
+     * 计算帧中某个区域的哈希。平面格式只使用亮度平面，打包格式取各通道平均值
+     */
+    public static long compute(Frame frame, NormalizedRect region) {
+        boolean planar = frame.image.length > 1;
+        int channels = planar ? 1 : frame.imageChannels;
+        int stride = planar ? FrameUtil.planeStride(frame, 0) : frame.imageStride;
+        ByteBuffer buffer = (ByteBuffer) frame.image[0];
+        int left = region.left(frame.imageWidth);
+        int top = region.top(frame.imageHeight);
+        int width = region.pixelWidth(frame.imageWidth);
+        int height = region.pixelHeight(frame.imageHeight);
+
+        long hash = 0;
+        for (int row = 0; row < ROWS; row++) {
+            int previous = 0;
+            for (int col = 0; col < COLS; col++) {
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES; sy++) {
+                    int y = top + (int) (((long) row * SAMPLES + sy) * height / (ROWS * SAMPLES));
+                    int rowOffset = y * stride;
+                    for (int sx = 0; sx < SAMPLES; sx++) {
+                        int x = left + (int) (((long) col * SAMPLES + sx) * width / (COLS * SAMPLES));
+                        int offset = rowOffset + x * channels;
+                        for (int c = 0; c < channels; c++) {
+                            sum += buffer.get(offset + c) & 0xFF;
+                        }
+                    }
+                }
+                if (col > 0) {
+                    hash = (hash << 1) | (sum > previous ? 1 : 0);
+                }
+                previous = sum;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 汉明距离，0~64
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,81 @@
+package cn.liziguo.scrcpy.frame;
+
+import org.bytedeco.javacv.Frame;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 从 {@link FramePool} 借出的帧，使用完之后必须调用 {@link #release()} 归还(也可以配合 try-with-resources 使用)。
+ *
+ * <p>同一个缓冲区可以被多个持有者共享：{@link #retain()} 返回一个新的引用，每个引用各自 {@link #release()} 一次，
+ * 所有引用都释放之后缓冲区才会回到帧池。
+ *
+ * <p>归还之后不要再访问 {@link #frame()}，它的缓冲区随时会被下一帧覆盖。
+ * 在 {@link cn.liziguo.scrcpy.constant.PoolExhaustedPolicy#DROP_OLDEST} 策略下借出的帧可能被强制回收，
+ * 读取完数据之后可以通过 {@link #isValid()} 判断读取期间是否被回收。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public final class PooledFrame implements AutoCloseable {
+
+    private final FramePool pool;
+    private final FramePool.Slot slot;
+    private final long generation;
+    private final long sequence;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    PooledFrame(FramePool pool, FramePool.Slot slot, long generation, long sequence) {
+        this.pool = pool;
+        this.slot = slot;
+        this.generation = generation;
+        this.sequence = sequence;
+    }
+
+    /**
+     * 借出的帧，在 {@link #release()} 之前有效
+     */
+    public Frame frame() {
+        return slot.frame;
+    }
+
+    /**
+     * 帧序号，从1开始递增
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * 是否仍然有效(本引用未释放，缓冲区也未被强制回收)
+     */
+    public boolean isValid() {
+        return !released.get() && FramePool.isValid(slot, generation);
+    }
+
+    /**
+     * 增加一个对同一缓冲区的引用，返回的新引用需要单独释放
+     *
+     * @return 新的引用，缓冲区已经被回收时返回 null
+     */
+    public PooledFrame retain() {
+        if (released.get() || !pool.retain(slot, generation)) {
+            return null;
+        }
+        return new PooledFrame(pool, slot, generation, sequence);
+    }
+
+    /**
+     * 释放本引用，重复调用无副作用
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            pool.release(slot, generation);
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+}
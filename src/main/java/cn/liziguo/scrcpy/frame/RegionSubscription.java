@@ -0,0 +1,101 @@
+package cn.liziguo.scrcpy.frame;
+
+import org.bytedeco.javacv.Frame;
+
+import java.io.Closeable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * 区域订阅，通过 {@link cn.liziguo.scrcpy.ScrcpyClient#subscribeRegion(NormalizedRect, Consumer)} 创建。
+ *
+ * <p>消费者收到的是解码缓冲区上的跨行视图：imageStride 仍是整帧的行跨度，缓冲区从区域左上角开始，不拷贝像素。
+ * 视图只在回调期间有效，需要保留时自行 clone 或拷贝。平面格式(YUV420P、NATIVE)只提供亮度平面，视图为单通道。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class RegionSubscription implements Closeable {
+
+    private final NormalizedRect region;
+    private final Consumer<Frame> consumer;
+    private final Consumer<RegionSubscription> onClose;
+    private final Frame view = new Frame();
+    private volatile boolean closed;
+    /**
+     * 生成当前视图时的源缓冲区和尺寸，不变时复用视图
+     */
+    private Buffer source;
+    private int sourceWidth;
+    private int sourceHeight;
+    private int sourceStride;
+
+    public RegionSubscription(NormalizedRect region, Consumer<Frame> consumer, Consumer<RegionSubscription> onClose) {
+        this.region = Objects.requireNonNull(region, "region");
+        this.consumer = Objects.requireNonNull(consumer, "consumer");
+        this.onClose = onClose;
+    }
+
+    /**
+     * 把整帧的区域视图交给消费者，由解码线程调用
+     */
+    public void accept(Frame frame) {
+        if (closed) {
+            return;
+        }
+        Buffer buffer = frame.image[0];
+        if (buffer != source || frame.imageWidth != sourceWidth || frame.imageHeight != sourceHeight
+                || frame.imageStride != sourceStride) {
+            updateView(frame);
+        }
+        view.keyFrame = frame.keyFrame;
+        view.pictType = frame.pictType;
+        view.timestamp = frame.timestamp;
+        consumer.accept(view);
+    }
+
+    private void updateView(Frame frame) {
+        int bytesPerPixel = frame.image.length > 1 ? 1 : frame.imageChannels;
+        int stride = frame.imageStride;
+        int left = region.left(frame.imageWidth);
+        int top = region.top(frame.imageHeight);
+        int width = region.pixelWidth(frame.imageWidth);
+        int height = region.pixelHeight(frame.imageHeight);
+        int offset = top * stride + left * bytesPerPixel;
+        int length = (height - 1) * stride + width * bytesPerPixel;
+        view.imageWidth = width;
+        view.imageHeight = height;
+        view.imageDepth = frame.imageDepth;
+        view.imageChannels = bytesPerPixel;
+        view.imageStride = stride;
+        view.image = new Buffer[]{((ByteBuffer) frame.image[0]).slice(offset, length)};
+        source = frame.image[0];
+        sourceWidth = frame.imageWidth;
+        sourceHeight = frame.imageHeight;
+        sourceStride = stride;
+    }
+
+    public NormalizedRect getRegion() {
+        return region;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 取消订阅
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (onClose != null) {
+            onClose.accept(this);
+        }
+    }
+}
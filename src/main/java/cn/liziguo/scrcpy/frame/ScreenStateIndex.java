@@ -0,0 +1,233 @@
+package cn.liziguo.scrcpy.frame;
+
+import org.bytedeco.javacv.Frame;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * 已知画面(登录页、弹窗、桌面等)的索引。每个状态由参考哈希、区域和最大汉明距离组成，
+ * 通过 {@link cn.liziguo.scrcpy.ScrcpyClient#setScreenStateIndex(ScreenStateIndex)} 接入后每帧由解码线程调用 {@link #update(Frame)}。
+ *
+ * <p>每帧对每个不同的区域只计算一次 {@link PerceptualHash}，然后与所有状态比较汉明距离，
+ * 无论有多少个等待者都不需要逐个比较图像。{@link #waitForState} 的等待者挂在对应状态上，进入该状态时统一唤醒。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class ScreenStateIndex {
+
+    /**
+     * 默认最大汉明距离
+     */
+    public static final int DEFAULT_MAX_DISTANCE = 10;
+
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+    /**
+     * update 使用的快照，增删状态时整体替换
+     */
+    private volatile Snapshot snapshot = new Snapshot(new State[0], new NormalizedRect[0], new int[0]);
+    private volatile Consumer<String> onStateEntered;
+    private long[] hashes = new long[0];
+
+    public void addState(String name, long hash) {
+        addState(name, hash, NormalizedRect.FULL, DEFAULT_MAX_DISTANCE);
+    }
+
+    /**
+     * @param hash        参考哈希，可由 {@link PerceptualHash#compute(Frame, NormalizedRect)} 预先算好保存
+     * @param region      参与比较的区域
+     * @param maxDistance 汉明距离不超过该值即视为处于该状态
+     */
+    public synchronized void addState(String name, long hash, NormalizedRect region, int maxDistance) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(region, "region");
+        if (maxDistance < 0 || maxDistance > 64) {
+            throw new IllegalArgumentException("maxDistance must be in [0, 64]");
+        }
+        State old = states.put(name, new State(name, hash, region, maxDistance));
+        if (old != null) {
+            old.waiters.forEach(f -> f.cancel(false));
+        }
+        rebuild();
+    }
+
+    /**
+     * 以参考截图登记状态
+     */
+    public void addState(String name, Frame reference, NormalizedRect region, int maxDistance) {
+        addState(name, PerceptualHash.compute(reference, region), region, maxDistance);
+    }
+
+    public synchronized void removeState(String name) {
+        State old = states.remove(name);
+        if (old != null) {
+            old.waiters.forEach(f -> f.cancel(false));
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        List<NormalizedRect> regions = new ArrayList<>();
+        State[] array = states.values().toArray(new State[0]);
+        int[] regionOf = new int[array.length];
+        for (int i = 0; i < array.length; i++) {
+            int index = regions.indexOf(array[i].region);
+            if (index < 0) {
+                index = regions.size();
+                regions.add(array[i].region);
+            }
+            regionOf[i] = index;
+        }
+        snapshot = new Snapshot(array, regions.toArray(new NormalizedRect[0]), regionOf);
+    }
+
+    /**
+     * 用新的一帧更新当前状态，唤醒进入状态的等待者。由解码线程调用
+     */
+    public void update(Frame frame) {
+        Snapshot current = snapshot;
+        NormalizedRect[] regions = current.regions;
+        if (hashes.length < regions.length) {
+            hashes = new long[regions.length];
+        }
+        for (int i = 0; i < regions.length; i++) {
+            hashes[i] = PerceptualHash.compute(frame, regions[i]);
+        }
+        State[] array = current.states;
+        for (int i = 0; i < array.length; i++) {
+            State state = array[i];
+            boolean match = PerceptualHash.distance(hashes[current.regionOf[i]], state.hash) <= state.maxDistance;
+            boolean entered = match && !state.active;
+            state.active = match;
+            if (entered) {
+                CompletableFuture<String> waiter;
+                while ((waiter = state.waiters.poll()) != null) {
+                    waiter.complete(state.name);
+                }
+                Consumer<String> listener = onStateEntered;
+                if (listener != null) {
+                    listener.accept(state.name);
+                }
+            }
+        }
+    }
+
+    /**
+     * 当前是否处于该状态(以最近一帧为准)
+     */
+    public boolean isInState(String name) {
+        return getState(name).active;
+    }
+
+    /**
+     * 当前匹配的所有状态
+     */
+    public Set<String> getCurrentStates() {
+        Set<String> result = new LinkedHashSet<>();
+        for (State state : snapshot.states) {
+            if (state.active) {
+                result.add(state.name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 等待进入某个状态，已经处于该状态时立即完成。状态被删除或替换时 future 被取消
+     */
+    public CompletableFuture<String> waitForStateAsync(String name) {
+        State state = getState(name);
+        CompletableFuture<String> future = new CompletableFuture<>();
+        state.waiters.add(future);
+        // 入队后再检查一次，避免与 update 交错时错过已经进入的状态
+        if (state.active && state.waiters.remove(future)) {
+            future.complete(name);
+        }
+        return future;
+    }
+
+    /**
+     * 阻塞等待进入某个状态
+     *
+     * @return 超时返回false
+     */
+    public boolean waitForState(String name, long timeout, TimeUnit unit) throws InterruptedException {
+        State state = getState(name);
+        CompletableFuture<String> future = waitForStateAsync(name);
+        try {
+            future.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            state.waiters.remove(future);
+            return false;
+        } catch (InterruptedException e) {
+            state.waiters.remove(future);
+            throw e;
+        } catch (ExecutionException | CancellationException e) {
+            return false;
+        }
+    }
+
+    private State getState(String name) {
+        State state = states.get(name);
+        if (state == null) {
+            throw new IllegalArgumentException("unknown state: " + name);
+        }
+        return state;
+    }
+
+    public Consumer<String> getOnStateEntered() {
+        return onStateEntered;
+    }
+
+    /**
+     * 进入某个状态时回调，在解码线程中执行，不要做耗时操作
+     */
+    public void setOnStateEntered(Consumer<String> onStateEntered) {
+        this.onStateEntered = onStateEntered;
+    }
+
+    private static final class State {
+        final String name;
+        final long hash;
+        final NormalizedRect region;
+        final int maxDistance;
+        final ConcurrentLinkedQueue<CompletableFuture<String>> waiters = new ConcurrentLinkedQueue<>();
+        volatile boolean active;
+
+        State(String name, long hash, NormalizedRect region, int maxDistance) {
+            this.name = name;
+            this.hash = hash;
+            this.region = region;
+            this.maxDistance = maxDistance;
+        }
+    }
+
+    private static final class Snapshot {
+        final State[] states;
+        final NormalizedRect[] regions;
+        /**
+         * 每个状态对应的区域下标
+         */
+        final int[] regionOf;
+
+        Snapshot(State[] states, NormalizedRect[] regions, int[] regionOf) {
+            this.states = states;
+            this.regions = regions;
+            this.regionOf = regionOf;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package cn.liziguo.scrcpy.frame;
+
+import cn.liziguo.scrcpy.decoder.PixelFormat;
+import org.bytedeco.javacv.Frame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 共享内存帧导出：把解码后的帧写入内存映射文件中的环形槽位，同一台机器上的其他进程(Python、C/C++ 等)
+ * 映射同一个文件即可直接读取像素，不需要经过socket或者序列化。Linux 上建议放在 {@code /dev/shm} 下。
+ *
+ * <p>文件布局(所有整数均为小端序)：
+ * <pre>
+ * 文件头(64字节)
+ *   0  magic        u32  "SCRF"
+ *   4  version      u32  1
+ *   8  slotCount    u32  槽位数量
+ *   12 slotCapacity u32  每个槽位数据区的字节数
+ *   16 slotStride   u32  相邻槽位的间距(槽位头+数据区，按64字节对齐)
+ *   20 state        u32  1=写入中 0=导出已关闭
+ *   24 latest       u64  最新一帧写完的序号，从1开始，0表示还没有帧
+ *   32 writerPid    u64  写入进程的pid
+ * 槽位 i 位于 64 + i * slotStride，序号为 n 的帧写入槽位 (n - 1) % slotCount
+ *   0  seqlock      u64  写入期间为奇数
+ *   8  sequence     u64  帧序号
+ *   16 timestamp    u64  帧的时间戳(微秒)
+ *   24 width        u32
+ *   28 height       u32
+ *   32 pixelFormat  u32  AV_PIX_FMT_*，见 {@link PixelFormat#getCode()}
+ *   36 channels     u32  每个像素的字节数，平面格式为1
+ *   40 planeCount   u32  平面数量，YUV420P 为3
+ *   44 dataSize     u32  数据区中有效的字节数
+ *   48 keyFrame     u32
+ *   64 数据区: 每个平面按行紧密排列(行跨度 = 宽度 * channels，U、V平面为 (width + 1) / 2)，平面之间首尾相接
+ * </pre>
+ *
+ * <p>读取方法：读 latest 得到序号和槽位，读槽位的 seqlock(为奇数时重试)，然后读取槽位头和数据，
+ * 最后再读一次 seqlock，两次相同且 sequence 等于期望的序号时数据有效，否则说明读取期间槽位被覆盖，换最新的帧重试。
+ * 读者可以直接在映射的内存上处理，只需要在结束后校验 seqlock。
+ *
+ * <p>写入方从不等待读者：读者再慢也只会在校验时发现数据被覆盖，不会阻塞解码线程。
+ * 每帧在解码线程中拷贝一次到映射内存。非线程安全，只应该由一个线程写入。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class SharedFrameExporter implements Closeable {
+
+    public static final int MAGIC = 0x46524353;
+    public static final int VERSION = 1;
+    public static final int FILE_HEADER_SIZE = 64;
+    public static final int SLOT_HEADER_SIZE = 64;
+
+    private static final int STATE_OFFSET = 20;
+    private static final int LATEST_OFFSET = 24;
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path path;
+    private final int slotCount;
+    private final int slotCapacity;
+    private final int slotStride;
+    private final MappedByteBuffer buffer;
+    private long sequence;
+    private long oversizedCount;
+    private volatile boolean closed;
+
+    /**
+     * 创建(或覆盖)映射文件
+     *
+     * @param slotCount    槽位数量，读者处理一帧的时间最多可以是帧间隔的 slotCount - 1 倍
+     * @param slotCapacity 每个槽位数据区的字节数，可以用 {@link #slotCapacity(int, int, PixelFormat)} 计算
+     */
+    public SharedFrameExporter(Path path, int slotCount, int slotCapacity) {
+        if (slotCount < 2) {
+            throw new IllegalArgumentException("slotCount must be at least 2");
+        }
+        if (slotCapacity <= 0) {
+            throw new IllegalArgumentException("slotCapacity must be positive");
+        }
+        this.path = path;
+        this.slotCount = slotCount;
+        this.slotCapacity = slotCapacity;
+        this.slotStride = (int) align(SLOT_HEADER_SIZE + (long) slotCapacity);
+        long size = FILE_HEADER_SIZE + (long) slotCount * slotStride;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("shared memory file too large: " + size);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            if (channel.size() > size) {
+                channel.truncate(size);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("映射共享内存文件失败: " + path, e);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        // 旧文件中可能残留上一次导出的数据，先让所有槽位失效
+        LONG.setVolatile(buffer, LATEST_OFFSET, 0L);
+        for (int i = 0; i < slotCount; i++) {
+            int slot = slotOffset(i);
+            buffer.putLong(slot + 8, 0L);
+            LONG.setRelease(buffer, slot, 0L);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, slotCount);
+        buffer.putInt(12, slotCapacity);
+        buffer.putInt(16, slotStride);
+        buffer.putLong(32, ProcessHandle.current().pid());
+        buffer.putInt(STATE_OFFSET, 1);
+        VarHandle.fullFence();
+    }
+
+    /**
+     * 按设备分辨率计算一个槽位需要的字节数，数据紧密排列，横竖屏旋转后大小不变
+     */
+    public static int slotCapacity(int width, int height, PixelFormat pixelFormat) {
+        long size;
+        if (pixelFormat.isPlanar()) {
+            size = (long) width * height + 2L * ((width + 1) / 2) * ((height + 1) / 2);
+        } else {
+            size = (long) width * height * pixelFormat.getChannels();
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("frame too large: " + width + "x" + height);
+        }
+        return (int) size;
+    }
+
+    /**
+     * 写入一帧，由解码线程调用。帧比槽位大时(例如分辨率变大)丢弃并计数
+     *
+     * @param pixelFormat 帧的像素格式
+     */
+    public void export(Frame frame, PixelFormat pixelFormat) {
+        if (closed) {
+            return;
+        }
+        boolean planar = frame.image.length > 1;
+        int channels = planar ? 1 : frame.imageChannels;
+        int width = frame.imageWidth;
+        int height = frame.imageHeight;
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        long dataSize = planar
+                ? (long) width * height + 2L * chromaWidth * chromaHeight
+                : (long) width * height * channels;
+        if (dataSize > slotCapacity) {
+            oversizedCount++;
+            return;
+        }
+
+        long next = sequence + 1;
+        int slot = slotOffset((int) ((next - 1) % slotCount));
+        long lock = (long) LONG.getOpaque(buffer, slot);
+        LONG.setOpaque(buffer, slot, lock + 1);
+        // 数据写入不能早于 seqlock 变为奇数
+        VarHandle.storeStoreFence();
+
+        int offset = slot + SLOT_HEADER_SIZE;
+        offset = copyPlane((ByteBuffer) frame.image[0], frame.imageStride, width * channels, height, offset);
+        if (planar) {
+            for (int plane = 1; plane < 3; plane++) {
+                offset = copyPlane((ByteBuffer) frame.image[plane], FrameUtil.planeStride(frame, plane),
+                        chromaWidth, chromaHeight, offset);
+            }
+        }
+        buffer.putLong(slot + 8, next);
+        buffer.putLong(slot + 16, frame.timestamp);
+        buffer.putInt(slot + 24, width);
+        buffer.putInt(slot + 28, height);
+        buffer.putInt(slot + 32, pixelFormat.getCode());
+        buffer.putInt(slot + 36, channels);
+        buffer.putInt(slot + 40, planar ? 3 : 1);
+        buffer.putInt(slot + 44, (int) dataSize);
+        buffer.putInt(slot + 48, frame.keyFrame ? 1 : 0);
+
+        LONG.setRelease(buffer, slot, lock + 2);
+        LONG.setRelease(buffer, LATEST_OFFSET, next);
+        sequence = next;
+    }
+
+    /**
+     * 按行拷贝一个平面并去掉行尾的填充
+     *
+     * @return 下一个平面在映射内存中的位置
+     */
+    private int copyPlane(ByteBuffer src, int srcStride, int rowBytes, int rows, int offset) {
+        if (srcStride == rowBytes) {
+            buffer.put(offset, src, 0, rowBytes * rows);
+            return offset + rowBytes * rows;
+        }
+        for (int y = 0; y < rows; y++) {
+            buffer.put(offset, src, y * srcStride, rowBytes);
+            offset += rowBytes;
+        }
+        return offset;
+    }
+
+    private int slotOffset(int index) {
+        return FILE_HEADER_SIZE + index * slotStride;
+    }
+
+    private static long align(long size) {
+        return (size + 63) & ~63L;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public int getSlotCapacity() {
+        return slotCapacity;
+    }
+
+    /**
+     * 已导出的帧数量，即最新一帧的序号
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * 因为超过槽位大小而丢弃的帧数量
+     */
+    public long getOversizedCount() {
+        return oversizedCount;
+    }
+
+    /**
+     * 把文件头的 state 置为0通知读者，并把已写入的内容刷到文件。文件本身不会删除，映射由GC释放
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer.putInt(STATE_OFFSET, 0);
+        VarHandle.fullFence();
+        buffer.force();
+    }
+}
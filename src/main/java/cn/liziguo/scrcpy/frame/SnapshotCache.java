@@ -0,0 +1,192 @@
+package cn.liziguo.scrcpy.frame;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 按帧序号缓存的截图：最新帧转换成的 BufferedImage 和编码后的 PNG/JPEG 等字节。
+ * 同一帧的并发请求共用一个结果，转换和编码都在有界的工作线程池中执行。
+ *
+ * <p>帧池策略为 DROP_OLDEST 时，帧可能在转换期间被复用，此时换最新帧重试；重试次数用完仍然拿不到完整的帧时结果以
+ * {@link IllegalStateException} 失败，不会缓存或返回被覆盖了一部分的图像。缓存按实际转换的帧序号记录。
+ *
+ * <p>默认线程池在所有客户端之间共享，线程数为CPU核数，队列满时由调用线程执行，多台设备同时截图不会互相排队。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class SnapshotCache {
+
+    private static final Executor DEFAULT_EXECUTOR = createDefaultExecutor();
+    /**
+     * 转换期间帧被帧池回收时重试的次数
+     */
+    private static final int MAX_ATTEMPTS = 3;
+    /**
+     * 转换失败的缓存项使用的序号，不与任何帧相同
+     */
+    private static final long NO_SEQUENCE = Long.MIN_VALUE;
+
+    private final Supplier<PooledFrame> source;
+    private final Executor executor;
+    private Entry<BufferedImage> image;
+    private final Map<String, Entry<byte[]>> encoded = new HashMap<>();
+
+    /**
+     * @param source 获取最新帧的新引用，没有帧时返回null
+     */
+    public SnapshotCache(Supplier<PooledFrame> source) {
+        this(source, DEFAULT_EXECUTOR);
+    }
+
+    public SnapshotCache(Supplier<PooledFrame> source, Executor executor) {
+        this.source = source;
+        this.executor = executor;
+    }
+
+    /**
+     * 最新帧转换成的图像，还没有帧时结果为null
+     */
+    public CompletableFuture<BufferedImage> image() {
+        PooledFrame frame = source.get();
+        if (frame == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return imageOf(frame);
+    }
+
+    /**
+     * 最新帧按 format 编码后的字节，还没有帧时结果为null
+     *
+     * @param format ImageIO 的格式名，例如 png、jpg
+     */
+    public CompletableFuture<byte[]> encoded(String format) {
+        String key = format.toLowerCase(Locale.ROOT);
+        PooledFrame frame = source.get();
+        if (frame == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        synchronized (this) {
+            Entry<byte[]> entry = encoded.get(key);
+            if (entry != null && entry.sequence() == frame.sequence()) {
+                frame.release();
+                return entry.future;
+            }
+            CompletableFuture<byte[]> future = imageOf(frame).thenApplyAsync(img -> encode(img, key), executor);
+            // 编码结果对应的帧序号跟随图像的缓存项，转换时换了帧也能正确命中
+            encoded.put(key, new Entry<>(image, future));
+            return future;
+        }
+    }
+
+    /**
+     * 取得或提交该帧的转换任务，frame 的引用由本方法负责释放
+     */
+    private synchronized CompletableFuture<BufferedImage> imageOf(PooledFrame frame) {
+        if (image != null && image.sequence() == frame.sequence()) {
+            frame.release();
+            return image.future;
+        }
+        Entry<BufferedImage> entry = new Entry<>(frame.sequence());
+        image = entry;
+        entry.future = CompletableFuture.supplyAsync(() -> convert(frame, entry), executor);
+        return entry.future;
+    }
+
+    /**
+     * 转换并把缓存项的序号更新为实际转换的帧
+     */
+    private BufferedImage convert(PooledFrame frame, Entry<BufferedImage> entry) {
+        PooledFrame current = frame;
+        try {
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                BufferedImage result = BufferedImageConverter.convert(current.frame(), null);
+                // 帧池策略为 DROP_OLDEST 时拷贝过程中缓冲区可能被复用，此时换最新帧重新转换
+                if (current.isValid()) {
+                    setSequence(entry, current.sequence());
+                    return result;
+                }
+                PooledFrame latest = source.get();
+                if (latest == null) {
+                    break;
+                }
+                current.release();
+                current = latest;
+            }
+        } finally {
+            current.release();
+        }
+        setSequence(entry, NO_SEQUENCE);
+        throw new IllegalStateException("帧在转换期间被帧池回收，重试 " + MAX_ATTEMPTS + " 次后仍然失败");
+    }
+
+    private synchronized void setSequence(Entry<BufferedImage> entry, long sequence) {
+        entry.sequence = sequence;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (!ImageIO.write(image, format, out)) {
+                throw new IllegalArgumentException("unsupported image format: " + format);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Executor createDefaultExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger index = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 16),
+                r -> {
+                    Thread thread = new Thread(r, "snapshot-encoder-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 缓存项，字段由 SnapshotCache 的锁保护
+     */
+    private static final class Entry<T> {
+        /**
+         * 编码结果依赖的图像缓存项，图像缓存项本身为null
+         */
+        final Entry<BufferedImage> base;
+        long sequence;
+        CompletableFuture<T> future;
+
+        Entry(long sequence) {
+            this.base = null;
+            this.sequence = sequence;
+        }
+
+        Entry(Entry<BufferedImage> base, CompletableFuture<T> future) {
+            this.base = base;
+            this.future = future;
+        }
+
+        long sequence() {
+            return base != null ? base.sequence : sequence;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package cn.liziguo.scrcpy.frame;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个处理阶段的耗时统计(次数、总耗时、最大耗时)，线程安全
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class StageTimer {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public StageTimer(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * 平均耗时(纳秒)，没有记录时返回0
+     */
+    public double getAverageNanos() {
+        long c = count.sum();
+        return c == 0 ? 0 : (double) totalNanos.sum() / c;
+    }
+
+    public void reset() {
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{count=%d, avg=%.3fms, max=%.3fms}",
+                name, getCount(), getAverageNanos() / 1e6, maxNanos.get() / 1e6);
+    }
+}
@@ -0,0 +1,50 @@
+package cn.liziguo.scrcpy.frame;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ChangeDetector} 的 SIMD 比较，单独成类：只有运行时加载了 jdk.incubator.vector 模块才会加载这个类。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+final class VectorDiffCounter {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private int threshold;
+    private ByteVector thresholdVector;
+
+    VectorDiffCounter(int threshold) {
+        setThreshold(threshold);
+    }
+
+    void setThreshold(int threshold) {
+        this.threshold = threshold;
+        this.thresholdVector = ByteVector.broadcast(SPECIES, (byte) threshold);
+    }
+
+    /**
+     * 统计 row 的 [start, end) 与 previous 对应位置相比差值超过阈值的字节数
+     */
+    int count(byte[] row, byte[] previous, int prevOffset, int start, int end) {
+        // 字节按无符号比较：异或0x80后有符号的大小顺序和无符号一致，max-min 即为差的绝对值
+        int count = 0;
+        int i = start;
+        int bound = start + SPECIES.loopBound(end - start);
+        for (; i < bound; i += SPECIES.length()) {
+            ByteVector a = ByteVector.fromArray(SPECIES, row, i).lanewise(VectorOperators.XOR, (byte) 0x80);
+            ByteVector b = ByteVector.fromArray(SPECIES, previous, prevOffset + i).lanewise(VectorOperators.XOR, (byte) 0x80);
+            ByteVector diff = a.max(b).sub(a.min(b));
+            count += diff.compare(VectorOperators.UNSIGNED_GT, thresholdVector).trueCount();
+        }
+        for (; i < end; i++) {
+            if (Math.abs((row[i] & 0xFF) - (previous[prevOffset + i] & 0xFF)) > threshold) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,271 @@
+package cn.liziguo.scrcpy.record;
+
+import cn.liziguo.scrcpy.constant.Codec;
+import cn.liziguo.scrcpy.decoder.AvcodecDecoder;
+import cn.liziguo.scrcpy.exception.RecorderException;
+import org.bytedeco.ffmpeg.avcodec.AVCodec;
+import org.bytedeco.ffmpeg.avcodec.AVCodecParameters;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avformat.AVFormatContext;
+import org.bytedeco.ffmpeg.avformat.AVIOContext;
+import org.bytedeco.ffmpeg.avformat.AVStream;
+import org.bytedeco.ffmpeg.avutil.AVDictionary;
+import org.bytedeco.ffmpeg.avutil.AVRational;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+import static org.bytedeco.ffmpeg.global.avcodec.*;
+import static org.bytedeco.ffmpeg.global.avformat.*;
+import static org.bytedeco.ffmpeg.global.avutil.*;
+
+/**
+ * 把 scrcpy 的压缩视频包原样写入容器文件(stream copy，不解码也不重新编码)，容器格式由文件扩展名决定，例如 mp4、mkv。
+ *
+ * <p>时间戳直接使用 scrcpy 包头中的 PTS(微秒)，以第一个包为0点。MP4/MOV 按关键帧分片写入
+ * (frag_keyframe+empty_moov+default_base_moof)，进程异常退出时只会丢失最后一个分片；MKV 本身按簇写入，同样可以播放已写入的部分。
+ *
+ * <p>非线程安全。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class PacketMuxer implements Closeable {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final AVRational microseconds = av_make_q(1, 1_000_000);
+    private AVFormatContext context;
+    private AVStream stream;
+    private AVPacket avPacket;
+    private long firstPts = Long.MIN_VALUE;
+    private long lastPts = Long.MIN_VALUE;
+    private long packetCount;
+
+    /**
+     * 上一次直接引用的堆外包缓冲区及其指针
+     */
+    private ByteBuffer directSource;
+    private BytePointer directPointer;
+    /**
+     * 需要拼接或拷贝时使用的包缓冲区(堆外内存)
+     */
+    private BytePointer packetData;
+    private ByteBuffer packetBuffer;
+    private int packetCapacity;
+
+    /**
+     * 创建文件并写入文件头
+     *
+     * @param config 编码配置包(H.264/H.265 的 SPS/PPS 等)，写入容器的 extradata
+     */
+    public PacketMuxer(String path, Codec codec, int width, int height, byte[] config) {
+        this(path, codec, width, height);
+        writeHeader(config);
+    }
+
+    /**
+     * 只确定容器格式并创建文件，之后需要调用 {@link #writeHeader(byte[])} 才能写入视频包。
+     * 用于在拿到配置包之前就检查输出路径是否可用
+     */
+    public PacketMuxer(String path, Codec codec, int width, int height) {
+        try {
+            open(path, codec, width, height);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void open(String path, Codec codec, int width, int height) {
+        context = new AVFormatContext(null);
+        int ret = avformat_alloc_output_context2(context, null, null, path);
+        if (ret < 0 || context.isNull()) {
+            context = null;
+            throw new RecorderException("无法根据文件名确定容器格式: " + path + " " + AvcodecDecoder.errorString(ret));
+        }
+        stream = avformat_new_stream(context, (AVCodec) null);
+        if (stream == null) {
+            throw new RecorderException("创建视频流失败");
+        }
+        AVCodecParameters parameters = stream.codecpar();
+        parameters.codec_type(AVMEDIA_TYPE_VIDEO);
+        parameters.codec_id(AvcodecDecoder.toCodecId(codec));
+        parameters.width(width);
+        parameters.height(height);
+        stream.time_base(microseconds);
+
+        if ((context.oformat().flags() & AVFMT_NOFILE) == 0) {
+            AVIOContext pb = new AVIOContext(null);
+            ret = avio_open(pb, path, AVIO_FLAG_WRITE);
+            if (ret < 0) {
+                throw new RecorderException("打开输出文件失败: " + path + " " + AvcodecDecoder.errorString(ret));
+            }
+            context.pb(pb);
+        }
+    }
+
+    /**
+     * 写入文件头，只能调用一次。失败时关闭文件
+     *
+     * @param config 编码配置包(H.264/H.265 的 SPS/PPS 等)，写入容器的 extradata
+     */
+    public void writeHeader(byte[] config) {
+        if (avPacket != null) {
+            throw new IllegalStateException("header already written");
+        }
+        try {
+            doWriteHeader(config);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void doWriteHeader(byte[] config) {
+        if (context == null) {
+            throw new IllegalStateException("muxer is closed");
+        }
+        AVCodecParameters parameters = stream.codecpar();
+        if (config != null && config.length > 0) {
+            // extradata 由 avformat_free_context 释放，必须用 av_malloc 分配并带0填充
+            BytePointer extradata = new BytePointer(av_malloc(config.length + AV_INPUT_BUFFER_PADDING_SIZE))
+                    .capacity(config.length + AV_INPUT_BUFFER_PADDING_SIZE);
+            extradata.put(config);
+            Pointer.memset(extradata.position(config.length), 0, AV_INPUT_BUFFER_PADDING_SIZE);
+            parameters.extradata(extradata.position(0));
+            parameters.extradata_size(config.length);
+        }
+        AVDictionary options = new AVDictionary(null);
+        String formatName = context.oformat().name().getString();
+        if (formatName.contains("mp4") || formatName.contains("mov")) {
+            av_dict_set(options, "movflags", "frag_keyframe+empty_moov+default_base_moof", 0);
+        }
+        int ret = avformat_write_header(context, options);
+        av_dict_free(options);
+        if (ret < 0) {
+            throw new RecorderException("写入文件头失败: " + AvcodecDecoder.errorString(ret));
+        }
+        avPacket = av_packet_alloc();
+        if (avPacket == null) {
+            throw new RecorderException("分配 AVPacket 失败");
+        }
+    }
+
+    public void write(ByteBuffer data, long pts, boolean keyFrame) {
+        write(EMPTY, data, pts, keyFrame);
+    }
+
+    /**
+     * 写入一个视频包
+     *
+     * @param prefix 拼接在包前面的数据，例如运行中分辨率变化后新的配置包，没有时传空数组
+     * @param data   包数据，position 到 limit 之间的部分
+     * @param pts    scrcpy 时间戳(微秒)
+     */
+    public void write(byte[] prefix, ByteBuffer data, long pts, boolean keyFrame) {
+        if (avPacket == null) {
+            throw new IllegalStateException("header not written");
+        }
+        int size = prefix.length + data.remaining();
+        if (prefix.length == 0 && data.isDirect() && data.position() == 0) {
+            if (directSource != data) {
+                directSource = data;
+                directPointer = new BytePointer(data).position(0);
+            }
+            avPacket.data(directPointer);
+        } else {
+            ensurePacketCapacity(size);
+            packetBuffer.clear();
+            packetBuffer.put(prefix);
+            packetBuffer.put(data.duplicate());
+            avPacket.data(packetData.position(0));
+        }
+        if (firstPts == Long.MIN_VALUE) {
+            firstPts = pts;
+        }
+        long relative = pts - firstPts;
+        // 容器要求时间戳严格递增
+        if (relative <= lastPts) {
+            relative = lastPts + 1;
+        }
+        lastPts = relative;
+        avPacket.size(size);
+        avPacket.pts(relative);
+        avPacket.dts(relative);
+        avPacket.flags(keyFrame ? AV_PKT_FLAG_KEY : 0);
+        avPacket.stream_index(stream.index());
+        av_packet_rescale_ts(avPacket, microseconds, stream.time_base());
+        int ret = av_write_frame(context, avPacket);
+        if (ret < 0) {
+            throw new RecorderException("写入视频包失败: " + AvcodecDecoder.errorString(ret));
+        }
+        packetCount++;
+    }
+
+    private void ensurePacketCapacity(int capacity) {
+        if (packetCapacity >= capacity) {
+            return;
+        }
+        if (packetData != null) {
+            av_free(packetData.position(0));
+        }
+        packetCapacity = Math.max(capacity, packetCapacity * 2);
+        packetData = new BytePointer(av_malloc(packetCapacity)).capacity(packetCapacity);
+        if (packetData.isNull()) {
+            throw new RecorderException("分配包缓冲区失败");
+        }
+        packetBuffer = packetData.asBuffer();
+    }
+
+    /**
+     * 是否已经写入文件头
+     */
+    public boolean isHeaderWritten() {
+        return avPacket != null;
+    }
+
+    /**
+     * 已写入的包数量
+     */
+    public long getPacketCount() {
+        return packetCount;
+    }
+
+    /**
+     * 已写入内容的时长(微秒)
+     */
+    public long getDurationMicros() {
+        return Math.max(0, lastPts);
+    }
+
+    /**
+     * 写入文件尾并关闭文件
+     */
+    @Override
+    public void close() {
+        if (context != null) {
+            if (avPacket != null) {
+                av_write_trailer(context);
+            }
+            if ((context.oformat().flags() & AVFMT_NOFILE) == 0 && context.pb() != null) {
+                avio_closep(context.pb());
+            }
+            avformat_free_context(context);
+            context = null;
+            stream = null;
+        }
+        if (avPacket != null) {
+            av_packet_free(avPacket);
+            avPacket = null;
+        }
+        directSource = null;
+        directPointer = null;
+        if (packetData != null) {
+            av_free(packetData.position(0));
+            packetData = null;
+        }
+    }
+}
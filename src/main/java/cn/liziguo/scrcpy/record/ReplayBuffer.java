@@ -0,0 +1,322 @@
+package cn.liziguo.scrcpy.record;
+
+import cn.liziguo.scrcpy.constant.Codec;
+import cn.liziguo.scrcpy.exception.RecorderException;
+import cn.liziguo.scrcpy.stream.VideoPacket;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * 回放缓冲区：在堆外环形缓冲区中保留最近一段时间的压缩视频包，需要时通过 {@link #dump(String)} 写成可播放的文件，
+ * 例如测试失败时保存失败前30秒的画面，而不用录下整个会话。
+ *
+ * <ul>
+ *   <li>包数据存放在创建时一次性分配的堆外缓冲区中，包的索引存放在预分配的基本类型数组中，写入时不分配任何堆内存，
+ *   每台设备的内存占用固定为 maxBytes 加上索引数组</li>
+ *   <li>按整个GOP淘汰：缓冲区总是从关键帧开始，保留的时长不少于 maxDurationMillis(内存允许时)，最多多出一个GOP</li>
+ *   <li>字节数超过 maxBytes 时无论时长都会淘汰最旧的包，并继续淘汰到下一个关键帧为止</li>
+ * </ul>
+ *
+ * <p>通过 {@link cn.liziguo.scrcpy.ScrcpyClient#startReplayBuffer(long, int)} 创建。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class ReplayBuffer implements Consumer<VideoPacket>, Closeable {
+
+    private static final byte FLAG_KEY = 1;
+    private static final byte FLAG_CONFIG = 2;
+    private static final byte[] NO_PREFIX = new byte[0];
+    /**
+     * 按每秒最多240个包估算索引容量
+     */
+    private static final int PACKETS_PER_SECOND = 240;
+
+    private final Codec codec;
+    private final int width;
+    private final int height;
+    private final long maxDurationMicros;
+    private final ByteBuffer data;
+
+    private final long[] pts;
+    private final int[] offsets;
+    private final int[] sizes;
+    private final byte[] flags;
+    /**
+     * 最旧的包的下标和包数量
+     */
+    private int head;
+    private int count;
+    /**
+     * 下一个包在 data 中的写入位置，即最新的包的结束位置
+     */
+    private int writePos;
+    private int usedBytes;
+
+    /**
+     * 环中关键帧的下标，按时间顺序
+     */
+    private final int[] keyFrames;
+    private int keyHead;
+    private int keyCount;
+
+    /**
+     * 环中第一个包之前最近的配置包，作为 dump 文件的 extradata
+     */
+    private byte[] baseConfig = new byte[256];
+    private int baseConfigSize;
+    private boolean closed;
+
+    /**
+     * @param config            会话中最近一次的配置包，还没有收到时传null
+     * @param maxDurationMillis 保留的时长
+     * @param maxBytes          包数据最多占用的字节数
+     */
+    public ReplayBuffer(Codec codec, int width, int height, byte[] config, long maxDurationMillis, int maxBytes) {
+        if (maxDurationMillis <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("maxDurationMillis and maxBytes must be positive");
+        }
+        this.codec = codec;
+        this.width = width;
+        this.height = height;
+        this.maxDurationMicros = maxDurationMillis * 1000;
+        this.data = ByteBuffer.allocateDirect(maxBytes);
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, (maxDurationMillis / 1000 + 2) * PACKETS_PER_SECOND);
+        this.pts = new long[capacity];
+        this.offsets = new int[capacity];
+        this.sizes = new int[capacity];
+        this.flags = new byte[capacity];
+        this.keyFrames = new int[capacity];
+        if (config != null) {
+            setBaseConfig(config, config.length);
+        }
+    }
+
+    /**
+     * 由读取视频流的线程调用，不分配堆内存
+     */
+    @Override
+    public synchronized void accept(VideoPacket packet) {
+        if (closed) {
+            return;
+        }
+        int size = packet.size();
+        if (size > data.capacity()) {
+            // 单个包比整个缓冲区还大，只能清空
+            clear();
+            return;
+        }
+        if (count == 0 && !packet.isConfig() && !packet.isKeyFrame()) {
+            // 缓冲区必须从关键帧开始
+            return;
+        }
+        int position = writePos + size <= data.capacity() ? writePos : 0;
+        while (count > 0 && (count == pts.length || overlapsLive(position, size))) {
+            evictHead();
+        }
+        alignHead();
+        if (count == 0 && !packet.isConfig() && !packet.isKeyFrame()) {
+            return;
+        }
+
+        int index = (head + count) % pts.length;
+        data.put(position, packet.data(), 0, size);
+        pts[index] = packet.pts();
+        offsets[index] = position;
+        sizes[index] = size;
+        flags[index] = packet.isConfig() ? FLAG_CONFIG : packet.isKeyFrame() ? FLAG_KEY : 0;
+        if (count == 0) {
+            usedBytes = 0;
+        }
+        count++;
+        usedBytes += size;
+        writePos = position + size;
+        if (packet.isKeyFrame()) {
+            keyFrames[(keyHead + keyCount) % keyFrames.length] = index;
+            keyCount++;
+        }
+        if (!packet.isConfig()) {
+            evictExpired(packet.pts());
+        }
+    }
+
+    /**
+     * [position, position + size) 是否与还在使用中的区域重叠
+     */
+    private boolean overlapsLive(int position, int size) {
+        int liveStart = offsets[head];
+        int liveEnd = writePos;
+        int end = position + size;
+        if (liveStart < liveEnd) {
+            return position < liveEnd && end > liveStart;
+        }
+        // 数据已经绕回开头：[liveStart, capacity) 和 [0, liveEnd)
+        return end > liveStart || position < liveEnd;
+    }
+
+    /**
+     * 下一个关键帧仍在保留时长以内时，淘汰最旧的整个GOP
+     */
+    private void evictExpired(long newestPts) {
+        while (keyCount >= 2) {
+            int nextKey = keyFrames[(keyHead + 1) % keyFrames.length];
+            if (newestPts - pts[nextKey] < maxDurationMicros) {
+                return;
+            }
+            while (head != nextKey) {
+                evictHead();
+            }
+        }
+    }
+
+    /**
+     * 淘汰包之后继续淘汰到关键帧(或其前面的配置包)为止，保证缓冲区从可以独立解码的位置开始
+     */
+    private void alignHead() {
+        while (count > 0 && flags[head] != FLAG_KEY) {
+            if (flags[head] == FLAG_CONFIG && count > 1 && flags[(head + 1) % pts.length] == FLAG_KEY) {
+                return;
+            }
+            evictHead();
+        }
+    }
+
+    private void evictHead() {
+        int index = head;
+        if (flags[index] == FLAG_CONFIG) {
+            setBaseConfig(null, sizes[index]);
+        } else if (flags[index] == FLAG_KEY) {
+            keyHead = (keyHead + 1) % keyFrames.length;
+            keyCount--;
+        }
+        usedBytes -= sizes[index];
+        head = (head + 1) % pts.length;
+        count--;
+    }
+
+    /**
+     * 保存配置包，source 为 null 时从环中最旧的包读取
+     */
+    private void setBaseConfig(byte[] source, int size) {
+        if (baseConfig.length < size) {
+            baseConfig = new byte[size];
+        }
+        if (source != null) {
+            System.arraycopy(source, 0, baseConfig, 0, size);
+        } else {
+            data.get(offsets[head], baseConfig, 0, size);
+        }
+        baseConfigSize = size;
+    }
+
+    private void clear() {
+        while (count > 0) {
+            evictHead();
+        }
+        writePos = 0;
+    }
+
+    /**
+     * 把缓冲区中的内容写入文件，容器格式由扩展名决定。只在拷贝索引和数据时短暂持有锁，写文件期间不影响录入
+     *
+     * @return 写入的时长(微秒)
+     * @throws RecorderException 缓冲区为空或者还没有收到配置包
+     */
+    public long dump(String path) {
+        long[] dumpPts;
+        int[] dumpSizes;
+        byte[] dumpFlags;
+        byte[] config;
+        ByteBuffer copy;
+        synchronized (this) {
+            if (count == 0) {
+                throw new RecorderException("回放缓冲区为空");
+            }
+            dumpPts = new long[count];
+            dumpSizes = new int[count];
+            dumpFlags = new byte[count];
+            copy = ByteBuffer.allocateDirect(usedBytes);
+            for (int i = 0; i < count; i++) {
+                int index = (head + i) % pts.length;
+                dumpPts[i] = pts[index];
+                dumpSizes[i] = sizes[index];
+                dumpFlags[i] = flags[index];
+                copy.put(data.slice(offsets[index], sizes[index]));
+            }
+            if (dumpFlags[0] == FLAG_CONFIG) {
+                config = new byte[dumpSizes[0]];
+                copy.get(0, config);
+            } else {
+                config = new byte[baseConfigSize];
+                System.arraycopy(baseConfig, 0, config, 0, baseConfigSize);
+            }
+        }
+        if (config.length == 0) {
+            throw new RecorderException("还没有收到配置包");
+        }
+        try (PacketMuxer muxer = new PacketMuxer(path, codec, width, height, config)) {
+            byte[] prefix = NO_PREFIX;
+            int offset = 0;
+            for (int i = 0; i < dumpPts.length; i++) {
+                ByteBuffer packet = copy.slice(offset, dumpSizes[i]);
+                offset += dumpSizes[i];
+                if (dumpFlags[i] == FLAG_CONFIG) {
+                    // 第一个配置包已经作为 extradata，后面的配置包拼接到下一个包前面
+                    if (i > 0) {
+                        prefix = new byte[dumpSizes[i]];
+                        packet.get(prefix);
+                    }
+                    continue;
+                }
+                muxer.write(prefix, packet, dumpPts[i], dumpFlags[i] == FLAG_KEY);
+                prefix = NO_PREFIX;
+            }
+            return muxer.getDurationMicros();
+        }
+    }
+
+    /**
+     * 当前缓冲的时长(微秒)
+     */
+    public synchronized long getBufferedMicros() {
+        if (count == 0) {
+            return 0;
+        }
+        int newest = (head + count - 1) % pts.length;
+        long first = flags[head] == FLAG_CONFIG && count > 1 ? pts[(head + 1) % pts.length] : pts[head];
+        return Math.max(0, pts[newest] - first);
+    }
+
+    /**
+     * 当前缓冲的字节数
+     */
+    public synchronized int getBufferedBytes() {
+        return count == 0 ? 0 : usedBytes;
+    }
+
+    public synchronized int getPacketCount() {
+        return count;
+    }
+
+    /**
+     * 包数据缓冲区的容量(字节)
+     */
+    public int getCapacity() {
+        return data.capacity();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 停止录入并丢弃缓冲的内容，堆外内存由GC回收
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        clear();
+    }
+}
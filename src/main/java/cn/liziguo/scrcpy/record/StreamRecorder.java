@@ -0,0 +1,363 @@
+package cn.liziguo.scrcpy.record;
+
+import cn.liziguo.scrcpy.constant.Codec;
+import cn.liziguo.scrcpy.exception.RecorderException;
+import cn.liziguo.scrcpy.stream.VideoPacket;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 录像：把服务端发送的压缩视频包直接写入 MP4/MKV 文件，不经过解码器，也不重新编码。
+ * 通过 {@link cn.liziguo.scrcpy.ScrcpyClient#startRecording(String)} 在运行中开始，
+ * {@link cn.liziguo.scrcpy.ScrcpyClient#stopRecording(StreamRecorder)} 结束。
+ *
+ * <p>创建时就确定容器格式并打开文件，路径或格式不可用时直接抛出 {@link RecorderException}。
+ * 文件头在收到配置包之后的第一个关键帧时才写入，因此录像总是从可以独立解码的画面开始。
+ * 运行中出现新的配置包(例如旋转导致分辨率变化)时，会把它拼接到下一个包的前面一起写入。
+ *
+ * <p>读取视频流的线程只拷贝包并放入按字节数限制的队列，文件写入在录像自己的线程中进行，磁盘慢不会拖慢视频流。
+ * 队列满时和转发服务一样清空并丢弃后续的包直到下一个关键帧，同时通过 {@link #setKeyFrameRequester(Runnable)} 请求关键帧，
+ * 文件中会缺少一段画面，但之后的内容仍然可以解码。
+ *
+ * <p>录像过程中写入失败(例如磁盘已满)时录像自行结束，并把异常交给 {@link #setOnError(Consumer)} 设置的回调。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class StreamRecorder implements Consumer<VideoPacket>, Closeable {
+
+    private static final byte[] NO_CONFIG = new byte[0];
+
+    private final String path;
+    private final PacketMuxer muxer;
+    private final Thread thread;
+    /**
+     * 队列中最多积压的字节数
+     */
+    private volatile int maxQueuedBytes = 1024 * 1024 * 16;
+    private volatile Runnable keyFrameRequester;
+    private volatile Consumer<RecorderException> onError;
+
+    /**
+     * 以下字段由 lock 保护
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<Packet> queue = new ArrayDeque<>();
+    private int queuedBytes;
+    /**
+     * 积压后丢弃包，直到下一个关键帧
+     */
+    private boolean waitingForKeyFrame;
+    /**
+     * 丢弃期间收到的最近一个配置包，恢复时和关键帧一起写入
+     */
+    private Packet skippedConfig;
+    private boolean closed;
+    private long droppedPacketCount;
+    private RecorderException error;
+
+    /**
+     * 以下字段只在录像线程中访问
+     */
+    private byte[] config;
+    /**
+     * 文件头写入之后收到的、尚未写入的配置包
+     */
+    private byte[] pendingConfig = NO_CONFIG;
+
+    private volatile boolean started;
+    private volatile long durationMicros;
+
+    /**
+     * @param config 会话中最近一次的配置包，还没有收到时传null
+     * @throws RecorderException 无法根据文件名确定容器格式，或者无法创建文件
+     */
+    public StreamRecorder(String path, Codec codec, int width, int height, byte[] config) {
+        this.path = path;
+        this.config = config;
+        this.muxer = new PacketMuxer(path, codec, width, height);
+        // 文件写入是阻塞的原生调用，使用平台线程
+        this.thread = Thread.ofPlatform().name("scrcpy-recorder").daemon(true).start(this::writeLoop);
+    }
+
+    /**
+     * 由读取视频流的线程调用，只拷贝包并放入队列，不做文件写入
+     */
+    @Override
+    public void accept(VideoPacket packet) {
+        ByteBuffer data = packet.data();
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        Packet item = new Packet(bytes, packet.pts(), packet.isConfig(), packet.isKeyFrame());
+        boolean requestKeyFrame = false;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (waitingForKeyFrame) {
+                if (item.config) {
+                    skippedConfig = item;
+                    return;
+                }
+                if (!item.keyFrame) {
+                    droppedPacketCount++;
+                    return;
+                }
+                waitingForKeyFrame = false;
+                resume(item);
+                return;
+            }
+            if (queuedBytes + bytes.length > maxQueuedBytes && !queue.isEmpty()) {
+                // 写入跟不上：丢弃积压的包，从下一个关键帧重新开始，积压中的配置包保留到恢复时写入
+                for (Packet queued : queue) {
+                    if (queued.config) {
+                        skippedConfig = queued;
+                    } else {
+                        droppedPacketCount++;
+                    }
+                }
+                queue.clear();
+                queuedBytes = 0;
+                if (item.config) {
+                    skippedConfig = item;
+                    waitingForKeyFrame = true;
+                    requestKeyFrame = true;
+                } else if (item.keyFrame) {
+                    resume(item);
+                } else {
+                    droppedPacketCount++;
+                    waitingForKeyFrame = true;
+                    requestKeyFrame = true;
+                }
+            } else {
+                enqueue(item);
+            }
+        } finally {
+            lock.unlock();
+        }
+        Runnable requester = keyFrameRequester;
+        if (requestKeyFrame && requester != null) {
+            requester.run();
+        }
+    }
+
+    /**
+     * 从关键帧恢复写入，只在持有 lock 时调用
+     */
+    private void resume(Packet keyFrame) {
+        if (skippedConfig != null) {
+            enqueue(skippedConfig);
+            skippedConfig = null;
+        }
+        enqueue(keyFrame);
+    }
+
+    /**
+     * 只在持有 lock 时调用
+     */
+    private void enqueue(Packet item) {
+        queue.add(item);
+        queuedBytes += item.bytes.length;
+        notEmpty.signal();
+    }
+
+    private void writeLoop() {
+        RecorderException failure = null;
+        try {
+            while (true) {
+                Packet item;
+                lock.lock();
+                try {
+                    while (queue.isEmpty() && !closed) {
+                        notEmpty.awaitUninterruptibly();
+                    }
+                    // 关闭时先把已经排队的包写完
+                    item = queue.poll();
+                    if (item == null) {
+                        return;
+                    }
+                    queuedBytes -= item.bytes.length;
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    write(item);
+                } catch (RecorderException e) {
+                    failure = e;
+                    return;
+                }
+            }
+        } finally {
+            muxer.close();
+            if (failure != null) {
+                fail(failure);
+            }
+        }
+    }
+
+    private void fail(RecorderException failure) {
+        lock.lock();
+        try {
+            error = failure;
+            closed = true;
+            queue.clear();
+            queuedBytes = 0;
+            skippedConfig = null;
+        } finally {
+            lock.unlock();
+        }
+        Consumer<RecorderException> callback = onError;
+        if (callback != null) {
+            callback.accept(failure);
+        }
+    }
+
+    private void write(Packet item) {
+        if (item.config) {
+            if (!muxer.isHeaderWritten()) {
+                config = item.bytes;
+            } else if (!Arrays.equals(item.bytes, config)) {
+                pendingConfig = item.bytes;
+            }
+            return;
+        }
+        if (!muxer.isHeaderWritten()) {
+            if (config == null || !item.keyFrame) {
+                return;
+            }
+            muxer.writeHeader(config);
+            started = true;
+        }
+        muxer.write(pendingConfig, ByteBuffer.wrap(item.bytes), item.pts, item.keyFrame);
+        pendingConfig = NO_CONFIG;
+        durationMicros = muxer.getDurationMicros();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * 是否已经开始写入文件(收到了第一个关键帧)
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * 已录制的时长(微秒)
+     */
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 因为写入跟不上而丢弃的包数量
+     */
+    public long getDroppedPacketCount() {
+        lock.lock();
+        try {
+            return droppedPacketCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 导致录像提前结束的写入错误，没有出错时返回null
+     */
+    public RecorderException getError() {
+        lock.lock();
+        try {
+            return error;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    public void setMaxQueuedBytes(int maxQueuedBytes) {
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    public Runnable getKeyFrameRequester() {
+        return keyFrameRequester;
+    }
+
+    /**
+     * 因为积压丢包、需要等待关键帧时在读取视频流的线程中调用，不能阻塞，
+     * 例如 {@link cn.liziguo.scrcpy.stream.KeyFrameRequester#request()}
+     */
+    public void setKeyFrameRequester(Runnable keyFrameRequester) {
+        this.keyFrameRequester = keyFrameRequester;
+    }
+
+    public Consumer<RecorderException> getOnError() {
+        return onError;
+    }
+
+    /**
+     * 写入失败时在录像线程中调用，此时录像已经关闭
+     */
+    public void setOnError(Consumer<RecorderException> onError) {
+        this.onError = onError;
+    }
+
+    /**
+     * 结束录像：写完已经排队的包，写入文件尾，等待文件关闭后返回
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 拷贝出来的视频包
+     */
+    private static final class Packet {
+        final byte[] bytes;
+        final long pts;
+        final boolean config;
+        final boolean keyFrame;
+
+        Packet(byte[] bytes, long pts, boolean config, boolean keyFrame) {
+            this.bytes = bytes;
+            this.pts = pts;
+            this.config = config;
+            this.keyFrame = keyFrame;
+        }
+    }
+}
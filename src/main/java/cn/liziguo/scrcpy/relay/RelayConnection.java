@@ -0,0 +1,280 @@
+package cn.liziguo.scrcpy.relay;
+
+import cn.liziguo.scrcpy.relay.RelayServer.Message;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 转发服务的一个客户端：独立的发送线程和按字节数限制的队列
+ *
+ * <p>发送线程是虚拟线程，队列用 {@link ReentrantLock} 保护而不是 synchronized/wait：
+ * 空闲的客户端在 {@link Condition#await()} 中等待时不会占住载体线程。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+class RelayConnection {
+
+    private static final String WEB_SOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int OPCODE_BINARY = 0x2;
+    /**
+     * 等待 WebSocket 升级请求的最长时间
+     */
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+
+    private final RelayServer server;
+    private final Socket socket;
+    private final boolean webSocket;
+    private final byte[] frameHeader = new byte[10];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * 以下字段由 lock 保护
+     */
+    private final ArrayDeque<Message> queue = new ArrayDeque<>();
+    private int queuedBytes;
+    /**
+     * 积压后丢弃包，直到下一个关键帧
+     */
+    private boolean waitingForKeyFrame;
+    private boolean closed;
+    private long droppedPacketCount;
+
+    RelayConnection(RelayServer server, Socket socket, boolean webSocket) {
+        this.server = server;
+        this.socket = socket;
+        this.webSocket = webSocket;
+    }
+
+    void run() {
+        try {
+            socket.setTcpNoDelay(true);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1024 * 64);
+            if (webSocket) {
+                // 只连接不发送请求的客户端不能一直占着线程和socket
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                if (!handshake(out)) {
+                    return;
+                }
+                socket.setSoTimeout(0);
+            }
+            if (!server.register(this)) {
+                return;
+            }
+            sendLoop(out);
+        } catch (IOException | InterruptedException ignored) {
+            // 客户端断开
+        } finally {
+            server.unregister(this);
+            close();
+        }
+    }
+
+    private void sendLoop(OutputStream out) throws IOException, InterruptedException {
+        while (true) {
+            Message message;
+            boolean more;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !closed) {
+                    notEmpty.await();
+                }
+                if (closed) {
+                    return;
+                }
+                message = queue.poll();
+                queuedBytes -= message.bytes.length;
+                more = !queue.isEmpty();
+            } finally {
+                lock.unlock();
+            }
+            write(out, message.bytes);
+            if (!more) {
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * 由读取视频流的线程在持有 server 锁时调用，不阻塞
+     */
+    void offer(Message message) {
+        lock.lock();
+        try {
+            doOffer(message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void doOffer(Message message) {
+        if (closed) {
+            return;
+        }
+        if (waitingForKeyFrame) {
+            if (!message.keyFrame) {
+                // 配置包在恢复时和关键帧一起发送
+                if (!message.config) {
+                    droppedPacketCount++;
+                }
+                return;
+            }
+            waitingForKeyFrame = false;
+            Message config = server.latestConfig();
+            if (config != null) {
+                enqueue(config);
+            }
+            enqueue(message);
+            return;
+        }
+        if (queuedBytes + message.bytes.length > server.getMaxQueuedBytes() && !queue.isEmpty()) {
+            // 客户端跟不上：丢弃积压的包，从下一个关键帧重新开始
+            droppedPacketCount += queue.size();
+            queue.clear();
+            queuedBytes = 0;
+            if (message.keyFrame) {
+                // 当前包本身就是关键帧，直接从它开始，不需要请求新的关键帧
+                Message config = server.latestConfig();
+                if (config != null) {
+                    enqueue(config);
+                }
+                enqueue(message);
+            } else {
+                droppedPacketCount++;
+                waitForKeyFrame();
+            }
+            return;
+        }
+        enqueue(message);
+    }
+
+    void enqueue(Message message) {
+        lock.lock();
+        try {
+            queue.add(message);
+            queuedBytes += message.bytes.length;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void waitForKeyFrame() {
+        lock.lock();
+        try {
+            if (!waitingForKeyFrame) {
+                waitingForKeyFrame = true;
+                server.requestKeyFrame();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getDroppedPacketCount() {
+        lock.lock();
+        try {
+            return droppedPacketCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            queuedBytes = 0;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void write(OutputStream out, byte[] bytes) throws IOException {
+        if (webSocket) {
+            // 服务端发送的帧不加掩码
+            int length = bytes.length;
+            int headerLength;
+            frameHeader[0] = (byte) (0x80 | OPCODE_BINARY);
+            if (length < 126) {
+                frameHeader[1] = (byte) length;
+                headerLength = 2;
+            } else if (length <= 0xFFFF) {
+                frameHeader[1] = 126;
+                frameHeader[2] = (byte) (length >>> 8);
+                frameHeader[3] = (byte) length;
+                headerLength = 4;
+            } else {
+                frameHeader[1] = 127;
+                for (int i = 0; i < 8; i++) {
+                    frameHeader[2 + i] = (byte) ((long) length >>> (56 - i * 8));
+                }
+                headerLength = 10;
+            }
+            out.write(frameHeader, 0, headerLength);
+        }
+        out.write(bytes);
+    }
+
+    /**
+     * 处理 WebSocket 升级请求。之后客户端发来的消息(ping/close 等)不会被读取，断开由写入失败检测
+     *
+     * @return 请求不是合法的升级请求时返回false
+     */
+    private boolean handshake(OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+        String key = null;
+        String line = reader.readLine();
+        if (line == null || !line.startsWith("GET ")) {
+            return false;
+        }
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.ROOT).equals("sec-websocket-key")) {
+                key = line.substring(colon + 1).trim();
+            }
+        }
+        if (key == null) {
+            out.write("HTTP/1.1 400 Bad Request\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            return false;
+        }
+        String accept;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest((key + WEB_SOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            accept = Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n";
+        out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        return true;
+    }
+}
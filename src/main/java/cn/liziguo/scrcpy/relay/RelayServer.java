@@ -0,0 +1,334 @@
+package cn.liziguo.scrcpy.relay;
+
+import cn.liziguo.scrcpy.stream.VideoPacket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 转发服务：把一个会话读到的压缩视频包原样转发给本机的多个 TCP/WebSocket 客户端，
+ * 多个观看者共用同一个 scrcpy-server、同一个手机端编码器，转发过程不解码。
+ *
+ * <p>发给客户端的数据与 scrcpy 视频socket的格式相同(见 {@link cn.liziguo.scrcpy.stream.ScrcpyDemuxer})：
+ * 设备名称(64字节) + codec meta(12字节)，之后是带12字节包头的视频包。
+ * TCP 客户端可以直接用 {@code ScrcpyDemuxer} 读取；WebSocket 客户端每条二进制消息是上述的一段：
+ * 第一条是设备名称和 codec meta，之后每条是一个带包头的视频包。
+ *
+ * <ul>
+ *   <li>每个包只拷贝一次，所有客户端共用同一个字节数组</li>
+ *   <li>中途加入的客户端先收到最近的配置包和当前GOP(最近的关键帧及其后的包)，可以立即开始解码</li>
+ *   <li>每个客户端有独立的发送线程和按字节数限制的队列，队列满时清空并丢弃后续的包直到下一个关键帧，
+ *   慢的客户端不会阻塞读取视频流的线程，也不会影响其他客户端</li>
+ * </ul>
+ *
+ * <p>只监听回环地址。通过 {@link cn.liziguo.scrcpy.ScrcpyClient#startRelay()} 创建。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class RelayServer implements Consumer<VideoPacket>, Closeable {
+
+    static final int DEVICE_NAME_LENGTH = 64;
+    static final int PACKET_HEADER_LENGTH = 12;
+    private static final long PACKET_FLAG_CONFIG = 1L << 63;
+    private static final long PACKET_FLAG_KEY_FRAME = 1L << 62;
+    /**
+     * 请求关键帧的最小间隔
+     */
+    private static final long KEY_FRAME_REQUEST_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final byte[] preamble;
+    private final List<ServerSocket> serverSockets = new CopyOnWriteArrayList<>();
+    private final List<RelayConnection> connections = new CopyOnWriteArrayList<>();
+    /**
+     * 单个客户端队列中最多积压的字节数
+     */
+    private volatile int maxQueuedBytes = 1024 * 1024 * 4;
+    /**
+     * 缓存的GOP最多占用的字节数，超过时新加入的客户端需要等待下一个关键帧
+     */
+    private volatile int maxGopBytes = 1024 * 1024 * 8;
+    private volatile Runnable keyFrameRequester;
+    private long lastKeyFrameRequestNanos;
+
+    /**
+     * 以下字段由 this 保护
+     */
+    private Message config;
+    private final List<Message> gop = new ArrayList<>();
+    private int gopBytes;
+    private boolean gopComplete;
+    private boolean closed;
+
+    /**
+     * @param config 会话中最近一次的配置包，还没有收到时传null
+     */
+    public RelayServer(String deviceName, int codecId, int width, int height, byte[] config) {
+        ByteBuffer buffer = ByteBuffer.allocate(DEVICE_NAME_LENGTH + 12);
+        byte[] name = deviceName == null ? new byte[0] : deviceName.getBytes(StandardCharsets.UTF_8);
+        // 保留结尾的0
+        buffer.put(name, 0, Math.min(name.length, DEVICE_NAME_LENGTH - 1));
+        buffer.position(DEVICE_NAME_LENGTH);
+        buffer.putInt(codecId).putInt(width).putInt(height);
+        this.preamble = buffer.array();
+        if (config != null) {
+            this.config = Message.of(PACKET_FLAG_CONFIG, ByteBuffer.wrap(config), true, false);
+        }
+    }
+
+    /**
+     * 在回环地址上监听原始 TCP 连接
+     *
+     * @param port 端口，传0时由系统分配
+     * @return 实际监听的端口
+     */
+    public int listenTcp(int port) {
+        return listen(port, false);
+    }
+
+    /**
+     * 在回环地址上监听 WebSocket 连接，任意路径都可以升级
+     *
+     * @param port 端口，传0时由系统分配
+     * @return 实际监听的端口
+     */
+    public int listenWebSocket(int port) {
+        return listen(port, true);
+    }
+
+    private int listen(int port, boolean webSocket) {
+        ServerSocket serverSocket;
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException e) {
+            throw new RuntimeException("监听端口失败: " + port, e);
+        }
+        // 与 close() 在同一把锁内判断，close() 要么能看到这个监听，要么这里能看到已经关闭
+        boolean registered;
+        synchronized (this) {
+            registered = !closed;
+            if (registered) {
+                serverSockets.add(serverSocket);
+            }
+        }
+        if (!registered) {
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+            }
+            throw new IllegalStateException("relay server is closed");
+        }
+        Thread.ofVirtual().name("scrcpy-relay-accept-" + serverSocket.getLocalPort())
+                .start(() -> acceptLoop(serverSocket, webSocket));
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop(ServerSocket serverSocket, boolean webSocket) {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // close() 关闭了监听
+                return;
+            }
+            RelayConnection connection = new RelayConnection(this, socket, webSocket);
+            Thread.ofVirtual().name("scrcpy-relay-" + socket.getPort()).start(connection::run);
+        }
+    }
+
+    /**
+     * 由读取视频流的线程调用，只把包放入各客户端的队列，不做任何网络写入
+     */
+    @Override
+    public void accept(VideoPacket packet) {
+        long ptsAndFlags;
+        if (packet.isConfig()) {
+            ptsAndFlags = PACKET_FLAG_CONFIG;
+        } else {
+            ptsAndFlags = packet.pts() | (packet.isKeyFrame() ? PACKET_FLAG_KEY_FRAME : 0);
+        }
+        Message message = Message.of(ptsAndFlags, packet.data(), packet.isConfig(), packet.isKeyFrame());
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (message.config) {
+                config = message;
+                // 配置变化之后旧的GOP无法解码
+                gop.clear();
+                gopBytes = 0;
+                gopComplete = false;
+            } else if (message.keyFrame) {
+                gop.clear();
+                gop.add(message);
+                gopBytes = message.bytes.length;
+                gopComplete = true;
+            } else if (gopComplete) {
+                if (gopBytes + message.bytes.length > maxGopBytes) {
+                    gop.clear();
+                    gopBytes = 0;
+                    gopComplete = false;
+                } else {
+                    gop.add(message);
+                    gopBytes += message.bytes.length;
+                }
+            }
+            for (RelayConnection connection : connections) {
+                connection.offer(message);
+            }
+        }
+    }
+
+    /**
+     * 新客户端完成握手后调用：发送开头的设备信息、配置包和当前GOP，并开始接收新的包
+     */
+    synchronized boolean register(RelayConnection connection) {
+        if (closed) {
+            return false;
+        }
+        connection.enqueue(new Message(preamble, false, false));
+        if (config != null && gopComplete) {
+            connection.enqueue(config);
+            for (Message message : gop) {
+                connection.enqueue(message);
+            }
+        } else {
+            connection.waitForKeyFrame();
+        }
+        connections.add(connection);
+        return true;
+    }
+
+    void unregister(RelayConnection connection) {
+        connections.remove(connection);
+    }
+
+    /**
+     * 最近的配置包，只在持有 this 的锁时调用(客户端的 offer 由 accept 在锁内调用)
+     */
+    Message latestConfig() {
+        return config;
+    }
+
+    /**
+     * 多个客户端同时开始等待时只请求一次，只在持有 this 的锁时调用。
+     * 请求(例如 {@code control::resetVideo} 写控制socket)在单独的虚拟线程中执行，不阻塞读取视频流的线程，也不占用锁
+     */
+    void requestKeyFrame() {
+        Runnable requester = keyFrameRequester;
+        long now = System.nanoTime();
+        if (requester != null && (lastKeyFrameRequestNanos == 0 || now - lastKeyFrameRequestNanos > KEY_FRAME_REQUEST_INTERVAL_NANOS)) {
+            lastKeyFrameRequestNanos = now;
+            Thread.ofVirtual().name("scrcpy-relay-key-frame").start(() -> {
+                try {
+                    requester.run();
+                } catch (RuntimeException ignored) {
+                    // 控制连接已断开，会话即将结束
+                }
+            });
+        }
+    }
+
+    /**
+     * 当前连接的客户端数量
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * 所有客户端因为积压而丢弃的包数量之和
+     */
+    public long getDroppedPacketCount() {
+        long dropped = 0;
+        for (RelayConnection connection : connections) {
+            dropped += connection.getDroppedPacketCount();
+        }
+        return dropped;
+    }
+
+    public int getMaxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    public void setMaxQueuedBytes(int maxQueuedBytes) {
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    public int getMaxGopBytes() {
+        return maxGopBytes;
+    }
+
+    public void setMaxGopBytes(int maxGopBytes) {
+        this.maxGopBytes = maxGopBytes;
+    }
+
+    public Runnable getKeyFrameRequester() {
+        return keyFrameRequester;
+    }
+
+    /**
+     * 客户端需要等待关键帧(新加入时没有可用的GOP，或者因为积压丢包)时在单独的线程中调用，
+     * 例如 {@code control::resetVideo} 请求服务器立即发送关键帧
+     */
+    public void setKeyFrameRequester(Runnable keyFrameRequester) {
+        this.keyFrameRequester = keyFrameRequester;
+    }
+
+    /**
+     * 停止监听并断开所有客户端
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            gop.clear();
+        }
+        for (ServerSocket serverSocket : serverSockets) {
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+            }
+        }
+        for (RelayConnection connection : connections) {
+            connection.close();
+        }
+    }
+
+    /**
+     * 一个编码好的消息：12字节包头加包数据，或者开头的设备信息
+     */
+    static final class Message {
+        final byte[] bytes;
+        final boolean config;
+        final boolean keyFrame;
+
+        Message(byte[] bytes, boolean config, boolean keyFrame) {
+            this.bytes = bytes;
+            this.config = config;
+            this.keyFrame = keyFrame;
+        }
+
+        static Message of(long ptsAndFlags, ByteBuffer data, boolean config, boolean keyFrame) {
+            int size = data.remaining();
+            byte[] bytes = new byte[PACKET_HEADER_LENGTH + size];
+            ByteBuffer.wrap(bytes).putLong(ptsAndFlags).putInt(size).put(data);
+            return new Message(bytes, config, keyFrame);
+        }
+    }
+}
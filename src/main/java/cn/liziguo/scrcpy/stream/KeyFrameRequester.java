@@ -0,0 +1,67 @@
+package cn.liziguo.scrcpy.stream;
+
+import cn.liziguo.scrcpy.exception.ControlException;
+
+/**
+ * 请求服务器立即发送关键帧(例如 {@code control::resetVideo})，供读取视频流的线程调用。
+ *
+ * <p>请求在单独的虚拟线程中执行：控制socket的写入和 Control 的锁(例如正在等待设备回复的 getClipboard)
+ * 都不会阻塞读取视频流的线程。同一时刻最多只有一个请求在执行，两次请求之间至少间隔 minIntervalMillis，
+ * 重复的请求直接忽略，服务器已经在发送的关键帧会满足所有等待者。
+ * 控制连接断开时的 {@link ControlException} 被忽略，会话由视频流的结束来关闭。
+ *
+ * <p>线程安全。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class KeyFrameRequester {
+
+    private final Runnable request;
+    private final long minIntervalNanos;
+
+    /**
+     * 以下字段由 this 保护
+     */
+    private boolean inFlight;
+    private long lastRequestNanos;
+    private boolean requested;
+
+    /**
+     * @param request          实际发送请求的操作，可以阻塞
+     * @param minIntervalMillis 两次请求之间的最小间隔
+     */
+    public KeyFrameRequester(Runnable request, long minIntervalMillis) {
+        this.request = request;
+        this.minIntervalNanos = minIntervalMillis * 1_000_000L;
+    }
+
+    /**
+     * 不阻塞地请求一个关键帧
+     *
+     * @return 是否真正发出了请求，正在请求或者距离上一次请求太近时返回false
+     */
+    public synchronized boolean request() {
+        long now = System.nanoTime();
+        if (inFlight || (requested && now - lastRequestNanos < minIntervalNanos)) {
+            return false;
+        }
+        inFlight = true;
+        requested = true;
+        lastRequestNanos = now;
+        Thread.ofVirtual().name("scrcpy-key-frame-request").start(this::send);
+        return true;
+    }
+
+    private void send() {
+        try {
+            request.run();
+        } catch (ControlException ignored) {
+            // 控制连接已断开，会话即将结束
+        } finally {
+            synchronized (this) {
+                inFlight = false;
+            }
+        }
+    }
+}
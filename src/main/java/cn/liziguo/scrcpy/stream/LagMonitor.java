@@ -0,0 +1,47 @@
+package cn.liziguo.scrcpy.stream;
+
+/**
+ * 视频延迟估计：比较视频包的PTS(设备采集时间)与本机收到视频包的时间。
+ *
+ * <p>设备时钟和本机时钟的差值未知，因此把观察到的最小差值(网络最顺畅、解码最及时的那一刻)作为基准，
+ * 当前差值减去基准就是积压造成的额外延迟。编码器重新启动(收到配置包)时PTS的起点可能变化，需要调用 {@link #reset()}。
+ *
+ * <p>{@link #update(VideoPacket)} 和 {@link #reset()} 只能在读取视频流的线程中调用，{@link #getLagMicros()} 可以在任意线程调用。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class LagMonitor {
+
+    private long baseline = Long.MAX_VALUE;
+    private volatile long lagMicros;
+
+    /**
+     * 用刚读取的视频包更新延迟估计
+     *
+     * @return 当前延迟(微秒)
+     */
+    public long update(VideoPacket packet) {
+        if (packet.pts() == VideoPacket.NO_PTS) {
+            return lagMicros;
+        }
+        long offset = System.nanoTime() / 1000 - packet.pts();
+        if (offset < baseline) {
+            baseline = offset;
+        }
+        lagMicros = offset - baseline;
+        return lagMicros;
+    }
+
+    /**
+     * 当前延迟(微秒)
+     */
+    public long getLagMicros() {
+        return lagMicros;
+    }
+
+    public void reset() {
+        baseline = Long.MAX_VALUE;
+        lagMicros = 0;
+    }
+}
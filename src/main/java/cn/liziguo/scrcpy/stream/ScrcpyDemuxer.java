@@ -0,0 +1,160 @@
+package cn.liziguo.scrcpy.stream;
+
+import cn.liziguo.scrcpy.constant.Codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * scrcpy 视频流解复用器(要求 scrcpy-server 以 {@code send_frame_meta=true} 启动)。
+ *
+ * <p>视频socket上的数据格式：
+ * <pre>
+ * 设备名称(64字节，以0结尾)
+ * codec meta: 编码id(u32) 宽(u32) 高(u32)
+ * 视频包:
+ *   pts和标志位(u64)：第63位=配置包 第62位=关键帧 低62位=PTS(微秒)
+ *   包长度(u32)
+ *   包数据
+ * </pre>
+ * 按包头中的长度读取，得到的每一个包都是完整的 access unit，解码器不需要再探测格式或者查找帧边界。
+ *
+ * <p>包数据直接从 {@link ReadableByteChannel} 读入堆外缓冲区，缓冲区末尾保留 {@link #PADDING_SIZE} 字节的0填充
+ * (即 libavcodec 要求的 AV_INPUT_BUFFER_PADDING_SIZE)，可以直接交给只在回调期间读取的原生代码。
+ * 缓冲区在下一个包时复用，需要跨包持有数据的消费者(例如 libavcodec 的解码器)仍然要拷贝。
+ * 传入 {@code SocketChannel} 时整个读取过程不经过任何Java堆数组。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class ScrcpyDemuxer {
+
+    static final int DEVICE_NAME_LENGTH = 64;
+    static final int CODEC_META_LENGTH = 12;
+    static final int PACKET_HEADER_LENGTH = 12;
+    static final long PACKET_FLAG_CONFIG = 1L << 63;
+    static final long PACKET_FLAG_KEY_FRAME = 1L << 62;
+    static final long PACKET_PTS_MASK = PACKET_FLAG_KEY_FRAME - 1;
+    /**
+     * 包数据末尾的0填充长度
+     */
+    public static final int PADDING_SIZE = 64;
+
+    private final ReadableByteChannel channel;
+    private final VideoPacket packet = new VideoPacket();
+    private final ByteBuffer header = ByteBuffer.allocateDirect(Math.max(DEVICE_NAME_LENGTH, PACKET_HEADER_LENGTH));
+    private ByteBuffer buffer;
+    private ByteBuffer data;
+
+    private Codec codec;
+    private int codecId;
+    private int width;
+    private int height;
+
+    public ScrcpyDemuxer(ReadableByteChannel channel) {
+        this.channel = channel;
+        allocate(1024 * 64);
+    }
+
+    public ScrcpyDemuxer(InputStream in) {
+        this(Channels.newChannel(in));
+    }
+
+    /**
+     * 读取设备名称
+     */
+    public String readDeviceName() throws IOException {
+        readFully(header.clear().limit(DEVICE_NAME_LENGTH));
+        byte[] deviceNameBytes = new byte[DEVICE_NAME_LENGTH];
+        header.flip().get(deviceNameBytes);
+        for (int i = 0; i < deviceNameBytes.length; i++) {
+            if (deviceNameBytes[i] == 0x00) {
+                return new String(deviceNameBytes, 0, i, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 读取 codec meta：编码id和初始分辨率
+     */
+    public void readCodecMeta() throws IOException {
+        readFully(header.clear().limit(CODEC_META_LENGTH));
+        header.flip();
+        codecId = header.getInt();
+        codec = Codec.ofId(codecId);
+        width = header.getInt();
+        height = header.getInt();
+    }
+
+    /**
+     * 读取下一个视频包，返回的对象和缓冲区会在下一次调用时被复用
+     *
+     * @return 视频包，流正常结束时返回 null
+     */
+    public VideoPacket readPacket() throws IOException {
+        header.clear().limit(PACKET_HEADER_LENGTH);
+        if (channel.read(header) < 0) {
+            return null;
+        }
+        readFully(header);
+        header.flip();
+        long ptsAndFlags = header.getLong();
+        int size = header.getInt();
+        if (size <= 0) {
+            throw new IOException("视频包长度不合法: " + size);
+        }
+        if (buffer.capacity() < size + PADDING_SIZE) {
+            allocate(Math.max(size, buffer.capacity() * 2));
+        }
+        readFully(buffer.clear().limit(size));
+        // 上一个更长的包可能在填充区留下了数据，绝对位置写入受 limit 限制，先放开到容量
+        buffer.limit(buffer.capacity());
+        for (int i = size, end = size + PADDING_SIZE; i < end; i++) {
+            buffer.put(i, (byte) 0);
+        }
+
+        boolean config = (ptsAndFlags & PACKET_FLAG_CONFIG) != 0;
+        boolean keyFrame = (ptsAndFlags & PACKET_FLAG_KEY_FRAME) != 0;
+        long pts = config ? VideoPacket.NO_PTS : ptsAndFlags & PACKET_PTS_MASK;
+        packet.set(pts, config, keyFrame, data, size);
+        return packet;
+    }
+
+    private void allocate(int capacity) {
+        buffer = ByteBuffer.allocateDirect(capacity + PADDING_SIZE);
+        data = buffer.asReadOnlyBuffer();
+    }
+
+    private void readFully(ByteBuffer dst) throws IOException {
+        while (dst.hasRemaining()) {
+            if (channel.read(dst) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * 服务器实际使用的编码，编码id无法识别时返回 null
+     */
+    public Codec getCodec() {
+        return codec;
+    }
+
+    public int getCodecId() {
+        return codecId;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,86 @@
+package cn.liziguo.scrcpy.stream;
+
+import java.nio.ByteBuffer;
+
+/**
+ * scrcpy-server 发送的一个视频包：一个完整的压缩帧(access unit)，或者一个编码配置包(H.264/H.265 的 SPS/PPS 等)。
+ *
+ * <p>为了避免每个包都分配内存，{@link ScrcpyDemuxer} 会复用同一个 VideoPacket 对象和它的缓冲区，
+ * 数据只在读取下一个包之前有效，需要保留时请自行拷贝 {@link #data()}。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public final class VideoPacket {
+
+    /**
+     * 配置包没有时间戳
+     */
+    public static final long NO_PTS = -1;
+
+    private long pts = NO_PTS;
+    private boolean config;
+    private boolean keyFrame;
+    private int size;
+    /**
+     * 包数据的只读视图
+     */
+    private ByteBuffer data;
+
+    VideoPacket() {
+    }
+
+    /**
+     * 用已经拷贝出来的配置包构造一个独立的视频包，用于把会话中最近的配置包交给中途加入的监听器
+     */
+    public static VideoPacket ofConfig(byte[] config) {
+        VideoPacket packet = new VideoPacket();
+        packet.set(NO_PTS, true, false, ByteBuffer.wrap(config).asReadOnlyBuffer(), config.length);
+        return packet;
+    }
+
+    void set(long pts, boolean config, boolean keyFrame, ByteBuffer data, int size) {
+        this.pts = pts;
+        this.config = config;
+        this.keyFrame = keyFrame;
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * 显示时间戳，单位微秒。配置包返回 {@link #NO_PTS}
+     */
+    public long pts() {
+        return pts;
+    }
+
+    /**
+     * 是否是编码配置包(不包含图像数据，需要和下一个包一起送进解码器)
+     */
+    public boolean isConfig() {
+        return config;
+    }
+
+    /**
+     * 是否是关键帧
+     */
+    public boolean isKeyFrame() {
+        return keyFrame;
+    }
+
+    /**
+     * 包数据的只读视图，每次调用都会把 position 重置为 0、limit 重置为包长度。
+     * 由 {@link ScrcpyDemuxer} 读取的包是堆外缓冲区，limit 之后至少有 {@link ScrcpyDemuxer#PADDING_SIZE} 字节的0填充
+     */
+    public ByteBuffer data() {
+        data.clear().limit(size);
+        return data;
+    }
+
+    /**
+     * 包长度(字节)
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,328 @@
+package cn.liziguo.scrcpy.view;
+
+import cn.liziguo.scrcpy.Control;
+import cn.liziguo.scrcpy.ScrcpyClient;
+import cn.liziguo.scrcpy.constant.Action;
+import cn.liziguo.scrcpy.frame.BufferedImageConverter;
+import cn.liziguo.scrcpy.frame.NormalizedRect;
+import cn.liziguo.scrcpy.frame.RegionSubscription;
+import org.bytedeco.javacv.Frame;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.function.Consumer;
+
+/**
+ * 显示设备画面并把鼠标操作转发为触控的 Swing 组件，可以在一个窗口中放置多个。
+ *
+ * <ul>
+ *   <li>帧在解码线程中拷贝一次到 BufferedImage(见 {@link BufferedImageConverter})，EDT 不做格式转换。
+ *   三张图像轮换使用，拷贝和上传都在锁外进行，锁只保护交换图像引用</li>
+ *   <li>按显示器刷新率定时检查，只有出现新的帧序号时才重绘，多帧之间的重绘合并为一次</li>
+ *   <li>每个新帧上传到 VolatileImage 一次，缩放由 Java2D 的硬件加速管线完成</li>
+ *   <li>组件坐标到归一化设备坐标的变换在尺寸变化时计算并缓存，鼠标事件不再重复计算黑边</li>
+ * </ul>
+ *
+ * <p>画面需要是 BGR24(默认)或 GRAY8 格式。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class ScrcpyView extends JComponent implements Consumer<Frame> {
+
+    private static final int POINTER_ID = 1;
+
+    /**
+     * 同一时刻只转换一帧
+     */
+    private final Object acceptLock = new Object();
+    /**
+     * 保护 ready 和 spare 的交换
+     */
+    private final Object imageLock = new Object();
+    /**
+     * 解码线程正在写入的图像，由 acceptLock 保护
+     */
+    private ImageSlot back = new ImageSlot();
+    /**
+     * 写完还没有被 EDT 取走的最新一帧，和 spare 中总有一个为 null
+     */
+    private ImageSlot ready;
+    private ImageSlot spare = new ImageSlot();
+    /**
+     * EDT 正在使用的图像，只在 EDT 中访问
+     */
+    private ImageSlot front = new ImageSlot();
+    private volatile long sequence = -1;
+    private volatile int latestWidth;
+    private volatile int latestHeight;
+    private long nextSequence;
+    /**
+     * 已上传到 volatileImage 的帧序号
+     */
+    private long uploadedSequence = -1;
+    private long paintedSequence = -1;
+    private VolatileImage volatileImage;
+    private Timer refreshTimer;
+
+    private int frameWidth;
+    private int frameHeight;
+    /**
+     * 画面在组件中的位置
+     */
+    private final Rectangle imageBounds = new Rectangle();
+    /**
+     * 组件坐标到归一化设备坐标的变换
+     */
+    private AffineTransform inputTransform;
+    private final Point2D.Double point = new Point2D.Double();
+
+    private ScrcpyClient client;
+    private RegionSubscription subscription;
+
+    public ScrcpyView() {
+        setOpaque(true);
+        setBackground(Color.BLACK);
+        setFocusable(true);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                updateLayout();
+            }
+        });
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
+                touch(e, Action.DOWN);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                touch(e, Action.UP);
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                touch(e, Action.MOVE);
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                Control control = control();
+                if (control == null || !toDevice(e)) {
+                    return;
+                }
+                int rotation = e.getWheelRotation() > 0 ? 1 : -1;
+                if (e.isShiftDown()) {
+                    control.scroll(point.x, point.y, rotation, 0);
+                } else {
+                    control.scroll(point.x, point.y, 0, rotation);
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    /**
+     * 订阅客户端的整帧画面并把鼠标操作转发给它的 Control
+     */
+    public void attach(ScrcpyClient client) {
+        detach();
+        this.client = client;
+        this.subscription = client.subscribeRegion(NormalizedRect.FULL, this);
+    }
+
+    public void detach() {
+        if (subscription != null) {
+            subscription.close();
+            subscription = null;
+        }
+        client = null;
+    }
+
+    /**
+     * 提交一帧，可以在任意线程调用。帧在返回前拷贝完毕，调用方随后可以复用它
+     */
+    @Override
+    public void accept(Frame frame) {
+        synchronized (acceptLock) {
+            ImageSlot target = back;
+            target.image = BufferedImageConverter.convert(frame, target.image);
+            target.sequence = nextSequence++;
+            synchronized (imageLock) {
+                // EDT 还没取走的上一帧直接作废，复用它的图像
+                if (ready != null) {
+                    back = ready;
+                } else {
+                    back = spare;
+                    spare = null;
+                }
+                ready = target;
+            }
+            latestWidth = target.image.getWidth();
+            latestHeight = target.image.getHeight();
+            sequence = target.sequence;
+        }
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        int refreshRate = 60;
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if (gc != null) {
+            int rate = gc.getDevice().getDisplayMode().getRefreshRate();
+            if (rate != DisplayMode.REFRESH_RATE_UNKNOWN && rate > 0) {
+                refreshRate = rate;
+            }
+        }
+        refreshTimer = new Timer(Math.max(1, 1000 / refreshRate), e -> {
+            if (sequence != paintedSequence) {
+                // 还没有布局或者分辨率变化(例如旋转)时画面位置会变，需要整个重绘
+                if (imageBounds.isEmpty() || latestWidth != frameWidth || latestHeight != frameHeight) {
+                    repaint();
+                } else {
+                    repaint(imageBounds);
+                }
+            }
+        });
+        refreshTimer.setCoalesce(true);
+        refreshTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        if (refreshTimer != null) {
+            refreshTimer.stop();
+            refreshTimer = null;
+        }
+        if (volatileImage != null) {
+            volatileImage.flush();
+            volatileImage = null;
+        }
+        super.removeNotify();
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics;
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        synchronized (imageLock) {
+            if (ready != null) {
+                spare = front;
+                front = ready;
+                ready = null;
+            }
+        }
+        BufferedImage current = front.image;
+        long currentSequence = front.sequence;
+        if (current == null) {
+            return;
+        }
+        if (current.getWidth() != frameWidth || current.getHeight() != frameHeight) {
+            frameWidth = current.getWidth();
+            frameHeight = current.getHeight();
+            updateLayout();
+        }
+        // 显存内容丢失时重新上传
+        do {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            if (volatileImage == null || volatileImage.getWidth() != frameWidth || volatileImage.getHeight() != frameHeight
+                    || volatileImage.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (volatileImage != null) {
+                    volatileImage.flush();
+                }
+                volatileImage = gc.createCompatibleVolatileImage(frameWidth, frameHeight);
+                uploadedSequence = -1;
+            }
+            if (uploadedSequence != currentSequence || volatileImage.contentsLost()) {
+                Graphics2D vg = volatileImage.createGraphics();
+                vg.drawImage(current, 0, 0, null);
+                vg.dispose();
+                uploadedSequence = currentSequence;
+            }
+        } while (volatileImage.contentsLost());
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(volatileImage, imageBounds.x, imageBounds.y, imageBounds.width, imageBounds.height, null);
+        paintedSequence = currentSequence;
+    }
+
+    /**
+     * 按比例居中，重新计算画面位置和输入变换
+     */
+    private void updateLayout() {
+        if (frameWidth == 0 || frameHeight == 0) {
+            return;
+        }
+        double rate = Math.min((double) getWidth() / frameWidth, (double) getHeight() / frameHeight);
+        int width = (int) (frameWidth * rate);
+        int height = (int) (frameHeight * rate);
+        imageBounds.setBounds((getWidth() - width) / 2, (getHeight() - height) / 2, width, height);
+        if (width == 0 || height == 0) {
+            inputTransform = null;
+            return;
+        }
+        AffineTransform transform = new AffineTransform();
+        transform.scale(1.0 / width, 1.0 / height);
+        transform.translate(-imageBounds.x, -imageBounds.y);
+        inputTransform = transform;
+        repaint();
+    }
+
+    private void touch(MouseEvent e, Action action) {
+        Control control = control();
+        if (control != null && toDevice(e)) {
+            control.touch(point.x, point.y, action, POINTER_ID);
+        }
+    }
+
+    /**
+     * 把鼠标位置变换为归一化设备坐标写入 point，拖动到画面外时夹到边缘
+     *
+     * @return 还没有画面时返回false
+     */
+    private boolean toDevice(MouseEvent e) {
+        AffineTransform transform = inputTransform;
+        if (transform == null) {
+            return false;
+        }
+        point.setLocation(e.getX(), e.getY());
+        transform.transform(point, point);
+        point.x = Math.max(0, Math.min(1, point.x));
+        point.y = Math.max(0, Math.min(1, point.y));
+        return true;
+    }
+
+    private Control control() {
+        return client == null ? null : client.getControl();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet() || frameWidth == 0) {
+            return super.getPreferredSize();
+        }
+        return new Dimension(frameWidth, frameHeight);
+    }
+
+    /**
+     * 一张转换好的图像和它的帧序号
+     */
+    private static final class ImageSlot {
+        BufferedImage image;
+        long sequence = -1;
+    }
+}
@@ -0,0 +1,80 @@
+package cn.liziguo.scrcpy.vision;
+
+/**
+ * 模板匹配结果，坐标为整帧的归一化坐标，中心点可以直接传给 Control.touch
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class MatchResult {
+
+    private final String name;
+    private final double x;
+    private final double y;
+    private final double width;
+    private final double height;
+    private final double score;
+    private final double scale;
+
+    public MatchResult(String name, double x, double y, double width, double height, double score, double scale) {
+        this.name = name;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.score = score;
+        this.scale = scale;
+    }
+
+    /**
+     * 模板名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 命中区域中心点的归一化横坐标
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * 命中区域中心点的归一化纵坐标
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * 命中区域的归一化宽度
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * 归一化相关系数，越接近1越相似
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * 命中时模板使用的缩放比例
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MatchResult{name=%s, x=%.4f, y=%.4f, w=%.4f, h=%.4f, score=%.3f, scale=%.2f}",
+                name, x, y, width, height, score, scale);
+    }
+}
@@ -0,0 +1,100 @@
+package cn.liziguo.scrcpy.vision;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.bytedeco.opencv.global.opencv_imgproc.*;
+
+/**
+ * 预加载的灰度模板，按缩放比例和金字塔参数缓存图像金字塔，第0层为该比例下的原尺寸，每上一层宽高减半。
+ *
+ * <p>缓存的 Mat 由 {@link TemplateMatcher} 的读写锁保护：读取在读锁内，{@link #clearPyramids()} 和 {@link #close()} 在写锁内。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class Template implements Closeable {
+
+    private final String name;
+    private final Mat gray;
+    private final Map<PyramidKey, Mat[]> pyramids = new ConcurrentHashMap<>();
+
+    /**
+     * @param gray 单通道灰度图，由模板持有
+     */
+    Template(String name, Mat gray) {
+        this.name = name;
+        this.gray = gray;
+    }
+
+    /**
+     * 指定缩放比例下的金字塔，首次使用时生成并缓存。层数不超过 levels + 1，最上层的短边不小于 minSize
+     */
+    Mat[] pyramid(double scale, int levels, int minSize) {
+        return pyramids.computeIfAbsent(new PyramidKey(scale, levels, minSize), key -> build(scale, levels, minSize));
+    }
+
+    private Mat[] build(double scale, int levels, int minSize) {
+        Mat base = gray;
+        if (scale != 1.0) {
+            int width = Math.max(1, (int) Math.round(gray.cols() * scale));
+            int height = Math.max(1, (int) Math.round(gray.rows() * scale));
+            base = new Mat();
+            try (Size size = new Size(width, height)) {
+                resize(gray, base, size, 0, 0, scale < 1 ? INTER_AREA : INTER_LINEAR);
+            }
+        }
+        List<Mat> result = new ArrayList<>();
+        result.add(base);
+        Mat current = base;
+        while (result.size() <= levels && Math.min(current.cols(), current.rows()) / 2 >= minSize) {
+            Mat down = new Mat();
+            pyrDown(current, down);
+            result.add(down);
+            current = down;
+        }
+        return result.toArray(new Mat[0]);
+    }
+
+    /**
+     * 丢弃缓存的金字塔，下次使用时按新参数重新生成
+     */
+    void clearPyramids() {
+        Map<PyramidKey, Mat[]> old = Map.copyOf(pyramids);
+        pyramids.clear();
+        for (Mat[] pyramid : old.values()) {
+            for (Mat mat : pyramid) {
+                if (mat != gray) {
+                    mat.close();
+                }
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWidth() {
+        return gray.cols();
+    }
+
+    public int getHeight() {
+        return gray.rows();
+    }
+
+    @Override
+    public void close() {
+        clearPyramids();
+        gray.close();
+    }
+
+    private record PyramidKey(double scale, int levels, int minSize) {
+    }
+}
@@ -0,0 +1,492 @@
+package cn.liziguo.scrcpy.vision;
+
+import cn.liziguo.scrcpy.frame.NormalizedRect;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Scalar;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC;
+import static org.bytedeco.opencv.global.opencv_core.minMaxLoc;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_GRAYSCALE;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+import static org.bytedeco.opencv.global.opencv_imgproc.*;
+
+/**
+ * 基于 OpenCV matchTemplate(TM_CCOEFF_NORMED) 的模板匹配引擎。
+ *
+ * <ul>
+ *   <li>模板只加载一次，转为灰度后按缩放比例缓存图像金字塔</li>
+ *   <li>先在金字塔最上层(1/2^levels 分辨率)找出若干候选，再逐层在候选附近的小窗口内细化，最终得分在原分辨率下计算</li>
+ *   <li>最上层的搜索区域较大时切成互相重叠的瓦片，在 ForkJoinPool 上并行匹配</li>
+ *   <li>结果为整帧的归一化坐标，可以直接传给 Control.touch</li>
+ * </ul>
+ *
+ * <p>帧直接包装为 Mat 不拷贝，只对搜索区域做灰度转换。三、四通道按 BGR/BGRA 处理，平面格式只使用亮度平面。
+ * 每次匹配产生的 Mat 都在返回前释放。
+ *
+ * <p>线程安全，可以在多个线程中同时匹配：匹配持有读锁，替换、删除模板和修改金字塔参数持有写锁，
+ * 会等待正在进行的匹配结束后再释放旧模板和缓存的金字塔。
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class TemplateMatcher implements Closeable {
+
+    /**
+     * 细化时候选位置周围额外搜索的像素数
+     */
+    private static final int REFINE_MARGIN = 4;
+
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+    private final ForkJoinPool pool;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile double threshold = 0.8;
+    private volatile int pyramidLevels = 2;
+    private volatile double[] scales = {1.0};
+    private volatile int tileSize = 512;
+    private volatile int candidates = 3;
+    private volatile int minTemplateSize = 8;
+
+    public TemplateMatcher() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public TemplateMatcher(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 从图片文件加载模板
+     *
+     * @throws IllegalArgumentException 文件无法读取
+     */
+    public Template loadTemplate(String name, String path) {
+        Mat gray = imread(path, IMREAD_GRAYSCALE);
+        if (gray == null || gray.empty()) {
+            throw new IllegalArgumentException("无法读取模板图片: " + path);
+        }
+        return putTemplate(name, gray);
+    }
+
+    /**
+     * 以 Mat 添加模板，图像会被拷贝并转为灰度
+     */
+    public Template addTemplate(String name, Mat image) {
+        return putTemplate(name, toGray(image));
+    }
+
+    /**
+     * 以帧中的某个区域添加模板，例如从当前画面截取按钮
+     */
+    public Template addTemplate(String name, Frame frame, NormalizedRect region) {
+        Mat gray;
+        try (Mat full = wrap(frame);
+             Rect rect = toRect(region, frame.imageWidth, frame.imageHeight);
+             Mat roi = new Mat(full, rect)) {
+            gray = toGray(roi);
+        }
+        return putTemplate(name, gray);
+    }
+
+    private Template putTemplate(String name, Mat gray) {
+        Template template = new Template(name, gray);
+        lock.writeLock().lock();
+        try {
+            Template old = templates.put(name, template);
+            if (old != null) {
+                old.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return template;
+    }
+
+    public void removeTemplate(String name) {
+        lock.writeLock().lock();
+        try {
+            Template old = templates.remove(name);
+            if (old != null) {
+                old.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Set<String> getTemplateNames() {
+        return Set.copyOf(templates.keySet());
+    }
+
+    /**
+     * 在整帧中查找模板
+     *
+     * @return 得分最高的命中，低于阈值时返回null
+     */
+    public MatchResult match(Frame frame, String name) {
+        return match(frame, name, NormalizedRect.FULL);
+    }
+
+    /**
+     * 在帧的某个区域中查找模板
+     *
+     * @return 得分最高的命中，低于阈值时返回null
+     * @throws IllegalArgumentException 模板不存在
+     */
+    public MatchResult match(Frame frame, String name, NormalizedRect region) {
+        lock.readLock().lock();
+        try {
+            Template template = templates.get(name);
+            if (template == null) {
+                throw new IllegalArgumentException("unknown template: " + name);
+            }
+            int levels = pyramidLevels;
+            int minSize = minTemplateSize;
+            int searchX = region.left(frame.imageWidth);
+            int searchY = region.top(frame.imageHeight);
+            Mat[] searchPyramid;
+            try (Mat full = wrap(frame);
+                 Rect searchRect = toRect(region, frame.imageWidth, frame.imageHeight);
+                 Mat roi = new Mat(full, searchRect)) {
+                searchPyramid = buildPyramid(toGray(roi), levels, minSize);
+            }
+            try {
+                Mat search = searchPyramid[0];
+                Candidate best = null;
+                double bestScale = 1;
+                Mat[] bestPyramid = null;
+                for (double scale : scales) {
+                    Mat[] templatePyramid = template.pyramid(scale, levels, minSize);
+                    if (templatePyramid[0].cols() > search.cols() || templatePyramid[0].rows() > search.rows()) {
+                        continue;
+                    }
+                    Candidate candidate = matchScale(searchPyramid, templatePyramid);
+                    if (candidate != null && (best == null || candidate.score > best.score)) {
+                        best = candidate;
+                        bestScale = scale;
+                        bestPyramid = templatePyramid;
+                    }
+                }
+                if (best == null || best.score < threshold) {
+                    return null;
+                }
+                int width = bestPyramid[0].cols();
+                int height = bestPyramid[0].rows();
+                double centerX = searchX + best.x + width / 2.0;
+                double centerY = searchY + best.y + height / 2.0;
+                return new MatchResult(name, centerX / frame.imageWidth, centerY / frame.imageHeight,
+                        (double) width / frame.imageWidth, (double) height / frame.imageHeight, best.score, bestScale);
+            } finally {
+                for (Mat mat : searchPyramid) {
+                    mat.close();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Candidate matchScale(Mat[] searchPyramid, Mat[] templatePyramid) {
+        int top = Math.min(searchPyramid.length, templatePyramid.length) - 1;
+        while (top > 0 && (templatePyramid[top].cols() > searchPyramid[top].cols()
+                || templatePyramid[top].rows() > searchPyramid[top].rows())) {
+            top--;
+        }
+        List<Candidate> coarse = coarseSearch(searchPyramid[top], templatePyramid[top]);
+        Candidate best = null;
+        for (Candidate candidate : coarse) {
+            Candidate refined = candidate;
+            for (int level = top - 1; level >= 0; level--) {
+                refined = refine(searchPyramid[level], templatePyramid[level], refined.x * 2, refined.y * 2);
+            }
+            if (best == null || refined.score > best.score) {
+                best = refined;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 在金字塔最上层找出得分最高的若干个候选，区域较大时切成重叠瓦片并行匹配
+     */
+    private List<Candidate> coarseSearch(Mat search, Mat template) {
+        int k = candidates;
+        int width = search.cols();
+        int height = search.rows();
+        int tile = Math.max(tileSize, Math.max(template.cols(), template.rows()) * 2);
+        if (width <= tile && height <= tile) {
+            return peaks(search, template, 0, 0, k);
+        }
+        List<Callable<List<Candidate>>> tasks = new ArrayList<>();
+        int stepX = tile - template.cols() + 1;
+        int stepY = tile - template.rows() + 1;
+        for (int y = 0; y < height - template.rows() + 1; y += stepY) {
+            for (int x = 0; x < width - template.cols() + 1; x += stepX) {
+                int offsetX = x;
+                int offsetY = y;
+                tasks.add(() -> {
+                    try (Rect rect = new Rect(offsetX, offsetY, Math.min(tile, width - offsetX), Math.min(tile, height - offsetY));
+                         Mat roi = new Mat(search, rect)) {
+                        return peaks(roi, template, offsetX, offsetY, k);
+                    }
+                });
+            }
+        }
+        List<Candidate> all = new ArrayList<>();
+        try {
+            for (Future<List<Candidate>> future : pool.invokeAll(tasks)) {
+                all.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        all.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        List<Candidate> result = new ArrayList<>(k);
+        for (Candidate candidate : all) {
+            // 瓦片重叠处可能得到同一个位置，按模板尺寸去重
+            boolean duplicate = false;
+            for (Candidate kept : result) {
+                if (Math.abs(kept.x - candidate.x) < template.cols() && Math.abs(kept.y - candidate.y) < template.rows()) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                result.add(candidate);
+                if (result.size() == k) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 匹配一次并取前 k 个峰值，每取一个就把它周围一个模板大小的区域清掉
+     */
+    private static List<Candidate> peaks(Mat search, Mat template, int offsetX, int offsetY, int k) {
+        List<Candidate> list = new ArrayList<>(k);
+        try (Mat result = new Mat();
+             DoublePointer maxVal = new DoublePointer(1);
+             Point maxLoc = new Point();
+             Scalar cleared = new Scalar(-1.0)) {
+            matchTemplate(search, template, result, TM_CCOEFF_NORMED);
+            for (int i = 0; i < k; i++) {
+                minMaxLoc(result, null, maxVal, null, maxLoc, null);
+                double score = maxVal.get();
+                if (i > 0 && score <= -1) {
+                    break;
+                }
+                list.add(new Candidate(offsetX + maxLoc.x(), offsetY + maxLoc.y(), score));
+                int left = Math.max(0, maxLoc.x() - template.cols() / 2);
+                int top = Math.max(0, maxLoc.y() - template.rows() / 2);
+                int right = Math.min(result.cols(), maxLoc.x() + template.cols() / 2 + 1);
+                int bottom = Math.min(result.rows(), maxLoc.y() + template.rows() / 2 + 1);
+                try (Rect rect = new Rect(left, top, right - left, bottom - top); Mat roi = new Mat(result, rect)) {
+                    roi.put(cleared);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 在上一层结果映射到本层的位置附近的小窗口内重新匹配
+     */
+    private static Candidate refine(Mat search, Mat template, int x, int y) {
+        int left = Math.max(0, x - REFINE_MARGIN);
+        int top = Math.max(0, y - REFINE_MARGIN);
+        int right = Math.min(search.cols(), x + template.cols() + REFINE_MARGIN);
+        int bottom = Math.min(search.rows(), y + template.rows() + REFINE_MARGIN);
+        left = Math.max(0, Math.min(left, right - template.cols()));
+        top = Math.max(0, Math.min(top, bottom - template.rows()));
+        try (Rect rect = new Rect(left, top, right - left, bottom - top); Mat window = new Mat(search, rect)) {
+            return peaks(window, template, left, top, 1).get(0);
+        }
+    }
+
+    private static Mat[] buildPyramid(Mat base, int levels, int minSize) {
+        List<Mat> pyramid = new ArrayList<>(levels + 1);
+        pyramid.add(base);
+        Mat current = base;
+        while (pyramid.size() <= levels && Math.min(current.cols(), current.rows()) / 2 >= minSize) {
+            Mat down = new Mat();
+            pyrDown(current, down);
+            pyramid.add(down);
+            current = down;
+        }
+        return pyramid.toArray(new Mat[0]);
+    }
+
+    /**
+     * 把帧包装为 Mat，不拷贝像素。平面格式只包装亮度平面
+     */
+    private static Mat wrap(Frame frame) {
+        int channels = frame.image.length > 1 ? 1 : frame.imageChannels;
+        return new Mat(frame.imageHeight, frame.imageWidth, CV_8UC(channels),
+                new BytePointer((ByteBuffer) frame.image[0]), frame.imageStride);
+    }
+
+    private static Mat toGray(Mat image) {
+        if (image.channels() == 1) {
+            return image.clone();
+        }
+        Mat gray = new Mat();
+        switch (image.channels()) {
+            case 3 -> cvtColor(image, gray, COLOR_BGR2GRAY);
+            case 4 -> cvtColor(image, gray, COLOR_BGRA2GRAY);
+            default -> {
+                gray.close();
+                throw new IllegalArgumentException("unsupported channels: " + image.channels());
+            }
+        }
+        return gray;
+    }
+
+    private static Rect toRect(NormalizedRect region, int width, int height) {
+        return new Rect(region.left(width), region.top(height), region.pixelWidth(width), region.pixelHeight(height));
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * 命中阈值(TM_CCOEFF_NORMED)，默认0.8
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getPyramidLevels() {
+        return pyramidLevels;
+    }
+
+    /**
+     * 金字塔层数，0表示直接在原分辨率搜索，默认2(先在1/4分辨率粗搜)。修改后释放按旧参数缓存的模板金字塔
+     */
+    public void setPyramidLevels(int pyramidLevels) {
+        if (pyramidLevels < 0) {
+            throw new IllegalArgumentException("pyramidLevels must not be negative");
+        }
+        lock.writeLock().lock();
+        try {
+            this.pyramidLevels = pyramidLevels;
+            clearPyramids();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public double[] getScales() {
+        return scales.clone();
+    }
+
+    /**
+     * 模板的缩放比例，用于模板截图分辨率与当前画面不一致的情况，默认只有1.0
+     */
+    public void setScales(double... scales) {
+        if (scales.length == 0) {
+            throw new IllegalArgumentException("scales must not be empty");
+        }
+        this.scales = scales.clone();
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * 粗搜时瓦片的边长(像素)，搜索区域超过该尺寸时并行匹配
+     */
+    public void setTileSize(int tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    public int getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * 粗搜保留的候选数量，默认3
+     */
+    public void setCandidates(int candidates) {
+        if (candidates <= 0) {
+            throw new IllegalArgumentException("candidates must be positive");
+        }
+        this.candidates = candidates;
+    }
+
+    public int getMinTemplateSize() {
+        return minTemplateSize;
+    }
+
+    /**
+     * 模板金字塔最上层短边的最小像素数，模板过小时自动减少层数。修改后释放按旧参数缓存的模板金字塔
+     */
+    public void setMinTemplateSize(int minTemplateSize) {
+        lock.writeLock().lock();
+        try {
+            this.minTemplateSize = minTemplateSize;
+            clearPyramids();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 只在持有写锁时调用
+     */
+    private void clearPyramids() {
+        for (Template template : templates.values()) {
+            template.clearPyramids();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Template template : templates.values()) {
+                template.close();
+            }
+            templates.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final class Candidate {
+        final int x;
+        final int y;
+        final double score;
+
+        Candidate(int x, int y, double score) {
+            this.x = x;
+            this.y = y;
+            this.score = score;
+        }
+    }
+}
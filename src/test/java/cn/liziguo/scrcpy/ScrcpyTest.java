@@ -60,6 +60,7 @@ public class ScrcpyTest extends JFrame {
 //        scrcpyClient.setEncoder(Encoder.OMX_GOOGLE_H264_ENCODER);
 //        scrcpyClient.setEncoder(Encoder.C2_QTI_AVC_ENCODER);
 //        scrcpyClient.setEncoder(Encoder.C2_ANDROID_AVC_ENCODER);
+//        scrcpyClient.setCodec(Codec.H265);
 //        scrcpyClient.setCodec(Codec.AV1);
         System.out.println("\n即将连接设备: " + scrcpyClient.getDevice());
         scrcpyClient.start();
@@ -0,0 +1,72 @@
+package cn.liziguo.scrcpy.frame;
+
+import org.bytedeco.javacv.Frame;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * ChangeDetector 向量版本与标量版本的对比，运行时加上 --add-modules jdk.incubator.vector
+ *
+ * @author Liziguo
+ * @date 2026-10-17
+ */
+public class ChangeDetectorBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int CHANNELS = 3;
+    private static final int ROUNDS = 300;
+
+    public static void main(String[] args) {
+        Frame[] frames = {createFrame(1), createFrame(1)};
+        // 第二帧只改动一块区域，模拟界面局部刷新
+        ByteBuffer second = (ByteBuffer) frames[1].image[0];
+        for (int y = 600; y < 700; y++) {
+            for (int x = 100; x < 400; x++) {
+                int i = y * frames[1].imageStride + x * CHANNELS;
+                second.put(i, (byte) (second.get(i) + 64));
+            }
+        }
+
+        ChangeDetector vector = new ChangeDetector();
+        ChangeDetector scalar = new ChangeDetector();
+        scalar.setVectorized(false);
+        for (int warmup = 0; warmup < 3; warmup++) {
+            run(vector, frames, ROUNDS / 3);
+            run(scalar, frames, ROUNDS / 3);
+        }
+        String vectorResult = vector.detect(frames[0]).toString();
+        String scalarResult = scalar.detect(frames[0]).toString();
+        if (!vectorResult.equals(scalarResult)) {
+            throw new IllegalStateException(vectorResult + " != " + scalarResult);
+        }
+        System.out.println(vectorResult);
+
+        double scalarMillis = run(scalar, frames, ROUNDS);
+        double vectorMillis = run(vector, frames, ROUNDS);
+        System.out.printf("%dx%dx%d scalar: %.3fms/frame, vector: %.3fms/frame, speedup: %.2fx%n",
+                WIDTH, HEIGHT, CHANNELS, scalarMillis, vectorMillis, scalarMillis / vectorMillis);
+    }
+
+    private static double run(ChangeDetector detector, Frame[] frames, int rounds) {
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            detector.detect(frames[i & 1]);
+        }
+        return (System.nanoTime() - start) / 1e6 / rounds;
+    }
+
+    private static Frame createFrame(long seed) {
+        Frame frame = new Frame();
+        frame.imageWidth = WIDTH;
+        frame.imageHeight = HEIGHT;
+        frame.imageDepth = Frame.DEPTH_UBYTE;
+        frame.imageChannels = CHANNELS;
+        frame.imageStride = WIDTH * CHANNELS;
+        byte[] data = new byte[WIDTH * HEIGHT * CHANNELS];
+        new Random(seed).nextBytes(data);
+        frame.image = new ByteBuffer[]{ByteBuffer.allocateDirect(data.length).put(data).clear()};
+        return frame;
+    }
+}